@@ -0,0 +1,134 @@
+package com.niton.compile;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.lang.model.SourceVersion;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Converts arbitrary names (config keys, file names, qualified names) to valid java identifiers.
+ * <pre>
+ *     foo-bar       -> FooBar / fooBar
+ *     foo_bar       -> FooBar / fooBar
+ *     a.b.c.foo-bar -> FooBar / fooBar
+ *     foo bar       -> FooBar / fooBar
+ *     1st-place     -> _1stPlace / _1stPlace
+ *     class         -> Class / class_
+ * </pre>
+ * Only the part after the last {@code .} is used, {@code -}, {@code _} and all characters that are not allowed in
+ * identifiers separate words. A leading digit is prefixed with {@code _} and variable names that are keywords
+ * (or literals) get a {@code _} suffix.
+ * <p>
+ * Results are memoized in a bounded LRU cache since the same names tend to be converted over and over.
+ * Instances are thread safe.
+ * </p>
+ */
+public final class IdentifierConverter {
+    private static final int DEFAULT_CACHE_SIZE = 4096;
+
+    private final Map<String, String> classNames;
+    private final Map<String, String> variableNames;
+
+    public IdentifierConverter() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize the maximum number of names to remember, per kind (class and variable names)
+     */
+    public IdentifierConverter(int cacheSize) {
+        classNames = lruCache(cacheSize);
+        variableNames = lruCache(cacheSize);
+    }
+
+    /**
+     * @param name a name that uses kebab case, snake case or contains other separators
+     * @return the name as class identifier (upper camel case)
+     * @throws IllegalArgumentException if the name does not contain a single character valid in identifiers
+     */
+    @NotNull
+    public String toClassName(@NotNull String name) {
+        var cached = get(classNames, name);
+        if (cached != null)
+            return cached;
+        var converted = convert(name);
+        put(classNames, name, converted);
+        return converted;
+    }
+
+    /**
+     * @param name a name that uses kebab case, snake case or contains other separators
+     * @return the name as variable identifier (lower camel case)
+     * @throws IllegalArgumentException if the name does not contain a single character valid in identifiers
+     */
+    @NotNull
+    public String toVariableName(@NotNull String name) {
+        var cached = get(variableNames, name);
+        if (cached != null)
+            return cached;
+        var className = toClassName(name);
+        var first = className.codePointAt(0);
+        var lower = Character.toLowerCase(first);
+        String converted;
+        if (lower == first)
+            converted = className;
+        else
+            converted = new StringBuilder(className.length())
+                .appendCodePoint(lower)
+                .append(className, Character.charCount(first), className.length())
+                .toString();
+        if (SourceVersion.isKeyword(converted))
+            converted = converted + "_";
+        put(variableNames, name, converted);
+        return converted;
+    }
+
+    private static String convert(String name) {
+        int end = name.length();
+        int start = name.lastIndexOf('.', end - 1) + 1;
+        while (start == end && end > 0) { //skip trailing dots like String.split() did
+            end = start - 1;
+            start = name.lastIndexOf('.', end - 1) + 1;
+        }
+        var builder = new StringBuilder(end - start + 1);
+        var wordStart = true;
+        for (int i = start; i < end; ) {
+            var codePoint = name.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (codePoint == '_' || codePoint == '-' || !Character.isJavaIdentifierPart(codePoint)
+                || Character.isIdentifierIgnorable(codePoint)) {
+                wordStart = true;
+                continue;
+            }
+            if (builder.length() == 0 && !Character.isJavaIdentifierStart(codePoint))
+                builder.append('_');
+            builder.appendCodePoint(wordStart ? Character.toTitleCase(codePoint) : codePoint);
+            wordStart = false;
+        }
+        if (builder.length() == 0)
+            throw new IllegalArgumentException(String.format("'%s' contains no characters usable in an identifier", name));
+        return builder.toString();
+    }
+
+    private static String get(Map<String, String> cache, String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    private static void put(Map<String, String> cache, String key, String value) {
+        synchronized (cache) {
+            cache.put(key, value);
+        }
+    }
+
+    private static Map<String, String> lruCache(int maxSize) {
+        return new LinkedHashMap<>(Math.min(maxSize, 256), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+}
@@ -4,10 +4,23 @@ import com.niton.compile.processor.BaseProcessor;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.QualifiedNameable;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
 import javax.lang.model.util.Types;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 
 public final class ProcessingUtils {
+    private static final Comparator<Element> BY_NAME = Comparator.comparing(ProcessingUtils::qualifiedName);
+
     private ProcessingUtils(){}
     public static TypeMirror getSuperclass(Types types, TypeMirror mirror) {
         return types.directSupertypes(mirror).get(0);
@@ -18,4 +31,85 @@ public final class ProcessingUtils {
     public static TypeMirror getSuperclass(ProcessingEnvironment env, TypeMirror mirror) {
         return getSuperclass(env.getTypeUtils(), mirror);
     }
+
+    /**
+     * Looks the type up in the {@link BaseProcessor#getSymbols() symbol cache} of the processor
+     *
+     * @return the type element or null if the compilation does not know the type
+     */
+    public static TypeElement getTypeElement(BaseProcessor processor, String qualifiedName) {
+        return processor.getSymbols().getTypeElement(qualifiedName);
+    }
+    public static TypeMirror getType(BaseProcessor processor, Class<?> type) {
+        return processor.getSymbols().getType(type);
+    }
+    public static TypeMirror getType(BaseProcessor processor, String qualifiedName) {
+        return processor.getSymbols().getType(qualifiedName);
+    }
+
+    /**
+     * Sorts elements by their fully qualified name (members by the name of their enclosing element first).
+     * JavaPoet emits members in the order they are added, generating from the returned list instead of an unordered
+     * collection (like a {@link java.util.HashSet}) keeps the generated source identical between builds.
+     *
+     * @param elements the elements to sort
+     * @return a new list with the elements in a stable order
+     */
+    public static <E extends Element> List<E> sortedByName(Collection<E> elements) {
+        return elements.stream().sorted(BY_NAME).toList();
+    }
+
+    /**
+     * @param element the element to name
+     * @return the qualified name of types, packages and modules. Members are named after their enclosing element,
+     * for example {@code com.example.Foo#bar(int)}
+     */
+    public static String qualifiedName(Element element) {
+        if (element instanceof QualifiedNameable qualified)
+            return qualified.getQualifiedName().toString();
+        var enclosing = element.getEnclosingElement();
+        var name = element.toString();
+        return enclosing == null ? name : qualifiedName(enclosing) + "#" + name;
+    }
+
+    /**
+     * Tells if an element can not be processed yet because it refers to types that do not exist (yet), for example
+     * types another processor generates in this round. Checks the type of the element, the supertypes of types,
+     * the signatures of executables and the types of the members of types.
+     *
+     * @param element the element to check
+     * @return true if any of the types is an {@link TypeKind#ERROR error type}
+     */
+    public static boolean refersToErrorTypes(Element element) {
+        if (isErroneous(element.asType()))
+            return true;
+        if (element instanceof TypeElement type) {
+            if (isErroneous(type.getSuperclass()) || type.getInterfaces().stream().anyMatch(ProcessingUtils::isErroneous))
+                return true;
+            for (var member : type.getEnclosedElements()) {
+                if (member.getKind().isField() || member instanceof ExecutableElement) {
+                    if (refersToErrorTypes(member))
+                        return true;
+                }
+            }
+        } else if (element instanceof ExecutableElement executable) {
+            return isErroneous(executable.getReturnType())
+                || executable.getParameters().stream().anyMatch(p -> isErroneous(p.asType()))
+                || executable.getThrownTypes().stream().anyMatch(ProcessingUtils::isErroneous);
+        }
+        return false;
+    }
+
+    private static boolean isErroneous(TypeMirror type) {
+        if (type == null)
+            return false;
+        return switch (type.getKind()) {
+            case ERROR -> true;
+            case DECLARED -> ((DeclaredType) type).getTypeArguments().stream().anyMatch(ProcessingUtils::isErroneous);
+            case ARRAY -> isErroneous(((ArrayType) type).getComponentType());
+            case WILDCARD -> isErroneous(((WildcardType) type).getExtendsBound())
+                || isErroneous(((WildcardType) type).getSuperBound());
+            default -> false;
+        };
+    }
 }
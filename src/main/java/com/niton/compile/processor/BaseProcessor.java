@@ -1,28 +1,35 @@
 package com.niton.compile.processor;
 
-import static org.apache.commons.lang3.StringUtils.capitalize;
-import static org.apache.commons.lang3.StringUtils.uncapitalize;
-
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.time.ZonedDateTime;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Generated;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
-import com.palantir.javapoet.AnnotationSpec;
-import com.palantir.javapoet.JavaFile;
+import com.niton.compile.IdentifierConverter;
 import com.palantir.javapoet.TypeSpec;
 
 /**
@@ -37,7 +44,9 @@ import com.palantir.javapoet.TypeSpec;
  * <h3>Javac bug</h3>
  * <p>
  * Said workaround is applied by default, if the bug should be fixed (looks like java 19 will be the according version)
- * the workaround can be disabled by overwriting {@link #applyJavacBugWorkaround()} to return false.
+ * the workaround can be disabled by overwriting {@link #applyJavacBugWorkaround()} to return false, or for javac
+ * releases with the fix by {@link ProcessorOptions#JAVAC_BUG_FIXED_RELEASE}. All processors of a compilation share the
+ * classes generated by the workaround.
  *
  * <h3>Utility</h3>
  * The additional functionality includes logging (see {@link ProcessingLogger}) with {@link #logger} and verifications (see {@link #verifier}).
@@ -47,6 +56,27 @@ import com.palantir.javapoet.TypeSpec;
  * HttpInterceptors. Read more how to implement them in the {@link ProcessorInterceptor} documentation.
  * To apply an interceptor overwrite {@link #getInterceptors(ProcessingEnvironment, ProcessingLogger, ProcessingVerifier)}
  *
+ * <h3>Steps</h3>
+ * Instead of overriding {@link #performProcessing(Set, RoundEnvironment)} a processor can split its work into
+ * {@link ProcessingStep}s returned by {@link #getSteps()}. Each step is only called in rounds with elements annotated
+ * with one of its annotations and gets these elements grouped by annotation. Elements a step can not process yet
+ * (see {@link com.niton.compile.ProcessingUtils#refersToErrorTypes(Element)}) are passed to it again in the next round.
+ *
+ * <h3>Incremental compilation</h3>
+ * Pass the elements a generated class is derived from to {@link #writeClass(String, TypeSpec, Element...)} and declare
+ * the {@link IncrementalMode} with {@link #getIncrementalMode()} so Gradle can recompile incrementally.
+ *
+ * <h3>Hosting</h3>
+ * Many processors can run under a single javac registration with a {@link ProcessorHost}. Hosted processors share the
+ * {@link SymbolCache}, the round index and the javac bug workaround of the host and run in the order of
+ * {@link #getDependencies()}.
+ *
+ * <h3>Options</h3>
+ * The processor options defined in {@link ProcessorOptions} are supported by every processor,
+ * for example {@code -Aproto.reproducible=true} to generate reproducible sources or {@code -Aproto.log.level=warn}
+ * to drop info messages before they are formatted. {@code -Aproto.profile.dir=build/profile} writes a report of the time
+ * spent per round (see {@link ProfilingInterceptor}).
+ *
  * @author Nils Brugger (u0eiuaw)
  */
 public abstract class BaseProcessor extends AbstractProcessor implements Processable
@@ -68,6 +98,58 @@ public abstract class BaseProcessor extends AbstractProcessor implements Process
      * If true a log entry will be created for each generated class.
      */
     protected boolean logClassWriting;
+    /**
+     * Creates the {@link Generated} annotation for written classes
+     */
+    private GeneratedAnnotation generatedAnnotation;
+    /**
+     * Renders and writes generated classes
+     */
+    private SourceWriter sourceWriter;
+    /**
+     * Backs {@link #getClassName(String)} and {@link #getVariableName(String)}
+     */
+    private final IdentifierConverter identifiers = new IdentifierConverter();
+    /**
+     * Type lookups by name, shared with {@link #verifier} and invalidated after every round
+     */
+    private SymbolCache symbols;
+    /**
+     * Memoized hierarchy checks of {@link #verifier}, invalidated after every round
+     */
+    private HierarchyOracle hierarchy;
+    /**
+     * Streams the diagnostics of {@link #logger} to {@link ProcessorOptions#DIAGNOSTICS_FILE}, null if not configured
+     */
+    private DiagnosticExporter exporter;
+    /**
+     * Collected by the {@link ProfilingInterceptor} if {@link ProcessorOptions#PROFILE_DIR} is set, null otherwise
+     */
+    private ProcessingMetrics metrics;
+    /**
+     * The file to write the profile to
+     */
+    private Path profileReport;
+    /**
+     * The result of {@link #getSteps()}, requested once
+     */
+    private List<ProcessingStep> steps;
+    /**
+     * Calls the {@link #steps} in {@link #performProcessing(Set, RoundEnvironment)}
+     */
+    private StepDispatcher stepDispatcher;
+    /**
+     * The elements this processor recorded as processed, see {@link #getLedger()}
+     */
+    private final ElementLedger ledger = new ElementLedger();
+    /**
+     * The host running this processor as a module, null if javac runs it directly
+     */
+    private ProcessorHost host;
+    /**
+     * Runs forked work and renders generated sources, see {@link #getExecutor()}
+     */
+    private ProcessingExecutor executor;
 
     @Override
     public boolean process(@NotNull Set<? extends TypeElement> annotations, @NotNull RoundEnvironment roundEnvironment)
@@ -77,32 +159,242 @@ public abstract class BaseProcessor extends AbstractProcessor implements Process
 
     /**
      * Same as {@link #process(Set, RoundEnvironment)} with the difference that it runs after all interceptors.
+     * <p>
+     * By default the round is dispatched to the {@link #getSteps() steps} whose annotations are present, without
+     * claiming the annotations. Override this to process rounds by hand.
+     * </p>
      *
      * @see #process(Set, RoundEnvironment)
      */
-    public abstract boolean performProcessing(@NotNull Set<? extends TypeElement> annotations,
-        @NotNull RoundEnvironment roundEnvironment);
+    public boolean performProcessing(@NotNull Set<? extends TypeElement> annotations,
+        @NotNull RoundEnvironment roundEnvironment)
+    {
+        stepDispatcher.process(annotations, roundEnvironment);
+        return false;
+    }
 
     @Override
     public synchronized void init(@NotNull ProcessingEnvironment processingEnv)
     {
         super.init(processingEnv);
-        logger = new ProcessingLogger(processingEnv.getMessager());
-        verifier = new ProcessingVerifier(processingEnv, logger);
+        logger = createLogger(processingEnv, getClass().getName());
+        exporter = logger.getExporter();
+        readProfileOptions(processingEnv.getOptions());
+        symbols = host == null ? new SymbolCache(processingEnv) : host.getSymbols();
+        hierarchy = host == null ? new HierarchyOracle(processingEnv) : host.getHierarchy();
+        verifier = new ProcessingVerifier(processingEnv, logger, symbols, hierarchy,
+            metrics == null ? null : metrics::verified);
+        generatedAnnotation = readGeneratedAnnotation(processingEnv.getOptions());
+        executor = ProcessingExecutor.create(logger);
+        sourceWriter = new SourceWriter(processingEnv, loadSourceManifest(processingEnv.getOptions()), logger,
+            executor.getExecutorService(), metrics, getIncrementalMode());
+        stepDispatcher = new StepDispatcher(getStepList(), processingEnv.getElementUtils(), logger);
         endpoint = this::performProcessing;
         applyInterceptors(processingEnv);
     }
 
+    @NotNull
+    private List<ProcessingStep> getStepList()
+    {
+        if (steps == null)
+            steps = List.copyOf(getSteps());
+        return steps;
+    }
+
+    /**
+     * Creates the logger configured by the {@link ProcessorOptions logging options}, the diagnostics exporter it
+     * writes to (if any) has to be closed by the caller
+     *
+     * @param processor the name of the processor the diagnostics are exported for
+     */
+    @NotNull
+    static ProcessingLogger createLogger(@NotNull ProcessingEnvironment processingEnv, @NotNull String processor)
+    {
+        var options = processingEnv.getOptions();
+        var messager = processingEnv.getMessager();
+        LogLevel level;
+        DiagnosticBuffer buffer = null;
+        try
+        {
+            level = LogLevel.parse(options.get(ProcessorOptions.LOG_LEVEL), LogLevel.INFO);
+            if (ProcessorOptions.getBoolean(options, ProcessorOptions.BUFFER_DIAGNOSTICS, false))
+                buffer = new DiagnosticBuffer(messager, ProcessorOptions.getInt(options, ProcessorOptions.MAX_REPEATS,
+                    DiagnosticBuffer.DEFAULT_MAX_REPEATS));
+        }
+        catch (IllegalArgumentException e)
+        {
+            var logger = new ProcessingLogger(messager);
+            logger.fail(e);
+            return logger;
+        }
+        var file = options.get(ProcessorOptions.DIAGNOSTICS_FILE);
+        if (file == null || file.isBlank())
+            return new ProcessingLogger(messager, level, buffer);
+        try
+        {
+            return new ProcessingLogger(messager, level, buffer,
+                DiagnosticExporter.open(processingEnv, Path.of(file), processor));
+        }
+        catch (IOException | RuntimeException e)
+        {
+            var logger = new ProcessingLogger(messager, level, buffer);
+            logger.log(LogLevel.WARN, "Could not export diagnostics to %s: %s", file, e.getMessage());
+            return logger;
+        }
+    }
+
+    private void readProfileOptions(@NotNull Map<String, String> options)
+    {
+        var directory = options.get(ProcessorOptions.PROFILE_DIR);
+        if (directory == null || directory.isBlank())
+            return;
+        var format = options.getOrDefault(ProcessorOptions.PROFILE_FORMAT, "text").trim().toLowerCase(Locale.ROOT);
+        if (!format.equals("text") && !format.equals("json"))
+        {
+            logger.fail("Option %s has to be text or json but was '%s'", ProcessorOptions.PROFILE_FORMAT, format);
+            return;
+        }
+        metrics = new ProcessingMetrics();
+        profileReport = Path.of(directory, getClass().getName() + (format.equals("json") ? ".profile.json" : ".profile.txt"));
+    }
+
+    @NotNull
+    private SourceManifest loadSourceManifest(@NotNull Map<String, String> options)
+    {
+        var directory = options.get(ProcessorOptions.MANIFEST_DIR);
+        if (directory == null || directory.isBlank())
+            return SourceManifest.inMemory();
+        var file = Path.of(directory, getClass().getName() + ".sources");
+        try
+        {
+            return SourceManifest.load(file);
+        }
+        catch (IOException e)
+        {
+            logger.log(LogLevel.WARN, "Could not read source manifest %s, all sources count as changed: %s", file, e.getMessage());
+            return SourceManifest.inMemory();
+        }
+    }
+
+    @NotNull
+    private GeneratedAnnotation readGeneratedAnnotation(@NotNull Map<String, String> options)
+    {
+        return GeneratedAnnotation.fromOptions(options, System.getenv(), logger::fail);
+    }
+
     private void applyInterceptors(@NotNull ProcessingEnvironment processingEnv)
     {
-        if (applyJavacBugWorkaround())
-            endpoint = new LastRoundInterceptor(processingEnv, logger, verifier, this.getClass().getSimpleName()).processable(endpoint);
+        if (host == null && applyJavacBugWorkaround() && isJavacBugPresent(processingEnv))
+            endpoint = new LastRoundInterceptor(processingEnv, logger, verifier, this.getClass().getName(), getIncrementalMode()).processable(endpoint);
+        if (metrics != null)
+            endpoint = new ProfilingInterceptor(processingEnv, logger, verifier, metrics).processable(endpoint);
         var interceptors = new LinkedList<>(getInterceptors(processingEnv, logger, verifier));
         Collections.reverse(interceptors);
         for (var interceptor : interceptors)
         {
             endpoint = interceptor.processable(endpoint);
         }
+        endpoint = new RoundLifecycleInterceptor(processingEnv, logger, verifier, this).processable(endpoint);
+    }
+
+    private boolean isJavacBugPresent(@NotNull ProcessingEnvironment processingEnv)
+    {
+        try
+        {
+            return LastRoundInterceptor.isBugPresent(processingEnv);
+        }
+        catch (IllegalArgumentException e)
+        {
+            logger.fail(e);
+            return true;
+        }
+    }
+
+    /**
+     * Called by {@link RoundLifecycleInterceptor} before the chain processes a round
+     */
+    void roundStarted(RoundEnvironment roundEnvironment)
+    {
+        if (roundEnvironment != null)
+            sourceWriter.getManifest().compiled(roundEnvironment.getRootElements());
+        if (exporter != null)
+            exporter.startRound();
+    }
+
+    /**
+     * Called by {@link RoundLifecycleInterceptor} after the whole chain processed a round
+     */
+    void roundFinished(RoundEnvironment roundEnvironment)
+    {
+        executor.join();
+        writeSources(sourceWriter.drainQueue());
+        if (host == null)
+        {
+            symbols.invalidate();
+            hierarchy.invalidate();
+        }
+    }
+
+    /**
+     * Called by {@link RoundLifecycleInterceptor} after the last round javac runs
+     */
+    void processingFinished()
+    {
+        try
+        {
+            var manifest = sourceWriter.getManifest();
+            if (manifest.getHits() + manifest.getMisses() > 0)
+                logger.info("[%s] %d of %d generated sources are unchanged", getClass().getSimpleName(),
+                    manifest.getHits(), manifest.getHits() + manifest.getMisses());
+            if (symbols.getHits() + symbols.getMisses() > 0)
+                logger.info("[%s] %s", getClass().getSimpleName(), symbols);
+            try
+            {
+                manifest.save();
+            }
+            catch (IOException e)
+            {
+                logger.log(LogLevel.WARN, "Could not write source manifest: %s", e.getMessage());
+            }
+            if (metrics != null)
+                writeProfile();
+            executor.close();
+        }
+        finally
+        {
+            //the file is shared with the other processors of the compilation, it has to be released in any case
+            if (exporter != null)
+                closeExporter();
+        }
+    }
+
+    private void writeProfile()
+    {
+        var name = getClass().getName();
+        var report = profileReport.toString().endsWith(".json") ? metrics.toJson(name) : metrics.toText(name);
+        try
+        {
+            if (profileReport.getParent() != null)
+                Files.createDirectories(profileReport.getParent());
+            Files.writeString(profileReport, report, StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            logger.log(LogLevel.WARN, "Could not write profile %s: %s", profileReport, e.getMessage());
+        }
+    }
+
+    private void closeExporter()
+    {
+        logger.flush();
+        try
+        {
+            exporter.close();
+        }
+        catch (IOException e)
+        {
+            logger.log(LogLevel.WARN, "Could not export diagnostics: %s", e.getMessage());
+        }
     }
 
     /**
@@ -117,6 +409,49 @@ public abstract class BaseProcessor extends AbstractProcessor implements Process
         return List.of();
     }
 
+    /**
+     * @return the steps {@link #performProcessing(Set, RoundEnvironment)} dispatches the rounds to, called once in
+     * {@link #init(ProcessingEnvironment)}. Steps are called in the returned order.
+     */
+    @NotNull
+    protected List<ProcessingStep> getSteps()
+    {
+        return List.of();
+    }
+
+    /**
+     * @return the processors that have to process a round before this one when both run in a {@link ProcessorHost}
+     */
+    @NotNull
+    public Set<Class<? extends BaseProcessor>> getDependencies()
+    {
+        return Set.of();
+    }
+
+    /**
+     * Called by the {@link ProcessorHost} running this processor before {@link #init(ProcessingEnvironment)}
+     */
+    void hostedBy(@NotNull ProcessorHost host)
+    {
+        this.host = host;
+    }
+
+    /**
+     * @return the annotation types of {@link SupportedAnnotationTypes} and of all {@link #getSteps() steps}
+     */
+    @Override
+    public Set<String> getSupportedAnnotationTypes()
+    {
+        if (getStepList().isEmpty())
+            return super.getSupportedAnnotationTypes();
+        var types = new LinkedHashSet<String>();
+        if (getClass().isAnnotationPresent(SupportedAnnotationTypes.class))
+            types.addAll(super.getSupportedAnnotationTypes());
+        for (var step : getStepList())
+            types.addAll(step.getAnnotations());
+        return Collections.unmodifiableSet(types);
+    }
+
     /**
      * @return if true the interceptor that prevents the bug <a href="https://bugs.openjdk.java.net/browse/JDK-8256826">JDK-8256826</a>  will be applied.
      */
@@ -125,6 +460,27 @@ public abstract class BaseProcessor extends AbstractProcessor implements Process
         return true;
     }
 
+    /**
+     * @return the incremental processing category of this processor, see {@link IncrementalMode} for how to register it with Gradle.
+     * Defaults to {@link IncrementalMode#NONE}
+     */
+    @NotNull
+    public IncrementalMode getIncrementalMode()
+    {
+        return IncrementalMode.NONE;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions()
+    {
+        var options = new HashSet<>(super.getSupportedOptions());
+        options.addAll(ProcessorOptions.all());
+        var gradleOption = getIncrementalMode().getGradleOption();
+        if (gradleOption != null)
+            options.add(gradleOption);
+        return Collections.unmodifiableSet(options);
+    }
+
     /**
      * Write the generated class to the output directory to be compiled.
      * errors will be propagated to the compiler.
@@ -132,15 +488,34 @@ public abstract class BaseProcessor extends AbstractProcessor implements Process
      *
      * @param pack the package name to write the class to
      * @param cls  the class name to write
+     * @see #writeClass(String, TypeSpec, Element...)
      */
     protected void writeClass(@NotNull String pack,@NotNull TypeSpec cls)
+    {
+        writeClass(pack, cls, new Element[0]);
+    }
+
+    /**
+     * Write the generated class to the output directory to be compiled.
+     * errors will be propagated to the compiler.
+     * <p>The class will also be annotated with {@link Generated}, see {@link ProcessorOptions#REPRODUCIBLE} for reproducible output.</p>
+     * <p>
+     * The originating elements are passed to the {@link javax.annotation.processing.Filer} so incremental builds
+     * know which sources the class has to be regenerated for. Originating elements already present on {@code cls}
+     * are kept. An {@link IncrementalMode#ISOLATING} processor has to pass exactly one.
+     * </p>
+     *
+     * @param pack                the package name to write the class to
+     * @param cls                 the class name to write
+     * @param originatingElements the elements (usually types) the class was derived from
+     */
+    protected void writeClass(@NotNull String pack, @NotNull TypeSpec cls, @NotNull Element... originatingElements)
     {
         try
         {
-            cls = annotateGenerated(cls);
-            var javaFile = JavaFile.builder(pack, cls).build();
-            javaFile.writeTo(processingEnv.getFiler());
-            if (logClassWriting)
+            cls = annotateGenerated(cls, originatingElements);
+            sourceWriter.write(pack, cls);
+            if (logClassWriting && logger.isEnabled(LogLevel.INFO))
                 logger.info("Generated class: %s", cls.name());
         }
         catch (IOException e)
@@ -149,14 +524,68 @@ public abstract class BaseProcessor extends AbstractProcessor implements Process
         }
     }
 
-    @Contract("_ -> new")
-    private @NotNull TypeSpec annotateGenerated(@NotNull TypeSpec cls)
+    /**
+     * Writes many generated classes at once, see {@link #writeClass(String, TypeSpec, Element...)}.
+     * <p>
+     * The classes are rendered to source code in parallel on worker threads, only the writing through the
+     * {@link javax.annotation.processing.Filer} happens on the calling thread (in iteration order).
+     * All classes are written when this method returns. Use this when generating many classes in one round.
+     * Originating elements have to be added to the {@link TypeSpec}s with {@link TypeSpec.Builder#addOriginatingElement(Element)}.
+     * </p>
+     *
+     * @param pack    the package name to write the classes to
+     * @param classes the classes to write
+     */
+    protected void writeClasses(@NotNull String pack, @NotNull Collection<TypeSpec> classes)
+    {
+        writeSources(classes.stream().map(cls -> new SourceWriter.Source(pack, cls)).toList());
+    }
+
+    /**
+     * Queues a generated class to be written at the end of the current round, after all interceptors are done.
+     * <p>
+     * Queued classes are written like {@link #writeClasses(String, Collection)}. Queuing a class with the same name twice
+     * in a round writes it once (with the originating elements of both), queuing a class that was already written
+     * in a previous round is skipped with a warning. Both would fail with a {@link javax.annotation.processing.FilerException} otherwise.
+     * </p>
+     *
+     * @param pack                the package name to write the class to
+     * @param cls                 the class to write
+     * @param originatingElements the elements (usually types) the class was derived from
+     */
+    protected void enqueueClass(@NotNull String pack, @NotNull TypeSpec cls, @NotNull Element... originatingElements)
+    {
+        var builder = cls.toBuilder();
+        for (var element : originatingElements)
+        {
+            if (!cls.originatingElements().contains(element))
+                builder.addOriginatingElement(element);
+        }
+        sourceWriter.enqueue(new SourceWriter.Source(pack, builder.build()));
+    }
+
+    private void writeSources(@NotNull List<SourceWriter.Source> sources)
+    {
+        if (sources.isEmpty())
+            return;
+        var annotated = sources.stream()
+            .map(source -> new SourceWriter.Source(source.pack(), annotateGenerated(source.type())))
+            .toList();
+        var written = sourceWriter.writeAll(annotated);
+        if (logClassWriting && logger.isEnabled(LogLevel.INFO))
+            written.forEach(source -> logger.info("Generated class: %s", source.type().name()));
+    }
+
+    @Contract("_, _ -> new")
+    private @NotNull TypeSpec annotateGenerated(@NotNull TypeSpec cls, @NotNull Element... originatingElements)
     {
-        return cls.toBuilder().addAnnotation(AnnotationSpec
-            .builder(Generated.class)
-            .addMember("value", "$S", this.getClass().getName())
-            .addMember("date", "$S", ZonedDateTime.now().toString())
-            .build()).build();
+        var builder = cls.toBuilder().addAnnotation(generatedAnnotation.create(this.getClass().getName()));
+        for (var element : originatingElements)
+        {
+            if (!cls.originatingElements().contains(element))
+                builder.addOriginatingElement(element);
+        }
+        return builder.build();
     }
 
     /**
@@ -165,15 +594,17 @@ public abstract class BaseProcessor extends AbstractProcessor implements Process
      *     foo-bar -> fooBar
      *     foo_bar -> fooBar
      *     a.b.c.foo-bar -> fooBar
+     *     class -> class_
      * </pre>
      *
      * @param name the name to derive the identifier from
      * @return the identifier
+     * @see IdentifierConverter
      */
     @NotNull
     protected String getVariableName(@NotNull String name)
     {
-        return uncapitalize(getClassName(name));
+        return identifiers.toVariableName(name);
     }
 
     /**
@@ -182,25 +613,60 @@ public abstract class BaseProcessor extends AbstractProcessor implements Process
      *     foo-bar -> FooBar
      *     foo_bar -> FooBar
      *     a.b.c.foo-bar -> FooBar
+     *     1st-place -> _1stPlace
      *  </pre>
      *
      * @param name a name that uses kebab case or snake case
      * @return the class identifier
+     * @see IdentifierConverter
      */
     @NotNull
     protected String getClassName(@NotNull String name)
     {
-        String[] parts = name.split("\\.");
-        parts = parts[parts.length - 1].split("[_-]");
-        for (int i = 0; i < parts.length; i++)
-        {
-            parts[i] = capitalize(parts[i]);
-        }
+        return identifiers.toClassName(name);
+    }
 
-        return String.join("", parts);
+    /**
+     * @return the cache for type lookups by name of the current round, see {@link SymbolCache}
+     */
+    @NotNull
+    public SymbolCache getSymbols()
+    {
+        return symbols;
+    }
+
+    /**
+     * @return the elements this processor recorded as processed, kept across rounds. Use its {@code getNew...} views in
+     * {@link #performProcessing(Set, RoundEnvironment)} to only handle the elements that were not processed in an
+     * earlier round. Steps have their own ledgers, see {@link ElementLedger}.
+     */
+    @NotNull
+    public ElementLedger getLedger()
+    {
+        return ledger;
+    }
+
+    /**
+     * @return the executor for work that does not need the javac model, like reading files or computing hashes.
+     * Tasks {@link ProcessingExecutor#fork(java.util.concurrent.Callable) forked} in a round are joined before it ends,
+     * the executor is closed when processing is over.
+     */
+    @NotNull
+    protected ProcessingExecutor getExecutor()
+    {
+        return executor;
     }
 
     public ProcessingEnvironment getProcessingEnvironment() {
         return processingEnv;
     }
+
+    /**
+     * @return the fingerprints of the sources generated by this processor, tells how many outputs are unchanged since the last build
+     */
+    @NotNull
+    protected SourceManifest getSourceManifest()
+    {
+        return sourceWriter.getManifest();
+    }
 }
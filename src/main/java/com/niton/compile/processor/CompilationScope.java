@@ -0,0 +1,60 @@
+package com.niton.compile.processor;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.annotation.processing.ProcessingEnvironment;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * State shared by all {@link BaseProcessor}s of one javac invocation.
+ * <p>
+ * Build tools like Gradle wrap the {@link ProcessingEnvironment} of each processor, the
+ * {@link ProcessingEnvironment#getElementUtils() element utils} are the same instance for the whole compilation though,
+ * so they identify it. A scope is kept as long as its compilation is reachable.
+ * </p>
+ * <p>
+ * Shared objects must not strongly reference the element utils, a round or anything else of javac: the scope is the
+ * value of a {@link WeakHashMap} entry and would keep its own key, and so the compilation, alive forever.
+ * </p>
+ */
+final class CompilationScope
+{
+    private static final Map<Object, CompilationScope> SCOPES = new WeakHashMap<>();
+
+    private final Map<Class<?>, Object> shared = new ConcurrentHashMap<>();
+
+    private CompilationScope()
+    {
+    }
+
+    /**
+     * @param processingEnv the environment of a processor
+     * @return the scope of the compilation the processor takes part in
+     */
+    @NotNull
+    static CompilationScope of(@NotNull ProcessingEnvironment processingEnv)
+    {
+        Object key = processingEnv.getElementUtils();
+        if (key == null)
+            key = processingEnv;
+        synchronized (SCOPES)
+        {
+            return SCOPES.computeIfAbsent(key, k -> new CompilationScope());
+        }
+    }
+
+    /**
+     * @param type    the type of the shared object
+     * @param factory creates the object for the first processor asking for it
+     * @return the object of the given type shared by all processors of this compilation
+     */
+    @NotNull
+    <T> T get(@NotNull Class<T> type, @NotNull Supplier<T> factory)
+    {
+        return type.cast(shared.computeIfAbsent(type, t -> factory.get()));
+    }
+}
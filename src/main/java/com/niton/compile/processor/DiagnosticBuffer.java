@@ -0,0 +1,118 @@
+package com.niton.compile.processor;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.Messager;
+import javax.lang.model.element.Element;
+import javax.tools.Diagnostic;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collects the diagnostics of a {@link ProcessingLogger} during a round and reports them at once with {@link #flush()}.
+ * <p>
+ * The same message for the same element is reported once. Messages are grouped by their rule, the unformatted message
+ * (for example {@code "%s should be a class"}). A rule violated by many elements (for example by a widely used base type)
+ * is reported for the first {@code maxRepeats} elements, followed by a single {@code "and N more"} summary of the same
+ * kind. Rules are reported in the order they were first added.
+ * </p>
+ * <p>
+ * {@link BaseProcessor} flushes its buffer when the round is over (see {@link ProcessorOptions#BUFFER_DIAGNOSTICS}).
+ * </p>
+ */
+public final class DiagnosticBuffer
+{
+    /**
+     * The number of elements a message is reported for unless {@link ProcessorOptions#MAX_REPEATS} says otherwise
+     */
+    public static final int DEFAULT_MAX_REPEATS = 20;
+
+    private final Messager messager;
+    private final int maxRepeats;
+    private final Map<Key, Set<Reported>> diagnostics = new LinkedHashMap<>();
+    private long duplicates;
+
+    /**
+     * @param messager   the messager to flush to
+     * @param maxRepeats how many elements the same message is reported for, 0 or less for no limit
+     */
+    public DiagnosticBuffer(@NotNull Messager messager, int maxRepeats)
+    {
+        this.messager = messager;
+        this.maxRepeats = maxRepeats <= 0 ? Integer.MAX_VALUE : maxRepeats;
+    }
+
+    /**
+     * Adds a message that is its own rule
+     *
+     * @param kind    the kind of the diagnostic
+     * @param message the formatted message
+     * @param element the element the message is about or null
+     */
+    public void add(@NotNull Diagnostic.Kind kind, @NotNull String message, @Nullable Element element)
+    {
+        add(kind, message, message, element);
+    }
+
+    /**
+     * @param kind    the kind of the diagnostic
+     * @param rule    identifies the check that created the message, usually the unformatted message
+     * @param message the formatted message
+     * @param element the element the message is about or null
+     */
+    public void add(@NotNull Diagnostic.Kind kind, @NotNull String rule, @NotNull String message,
+        @Nullable Element element)
+    {
+        var reported = diagnostics.computeIfAbsent(new Key(kind, rule), k -> new LinkedHashSet<>());
+        if (!reported.add(new Reported(element, message)))
+            duplicates++;
+    }
+
+    /**
+     * Reports all collected diagnostics and empties the buffer
+     */
+    public void flush()
+    {
+        for (var entry : diagnostics.entrySet())
+        {
+            var kind = entry.getKey().kind();
+            var count = 0;
+            String first = null;
+            for (var reported : entry.getValue())
+            {
+                if (count++ == maxRepeats)
+                    break;
+                if (first == null)
+                    first = reported.message();
+                if (reported.element() == null)
+                    messager.printMessage(kind, reported.message());
+                else
+                    messager.printMessage(kind, reported.message(), reported.element());
+            }
+            var more = entry.getValue().size() - maxRepeats;
+            if (more > 0)
+                messager.printMessage(kind, String.format("%s (and %d more)", first, more));
+        }
+        diagnostics.clear();
+    }
+
+    /**
+     * @return the number of messages that were dropped because they were added before for the same element
+     */
+    public long getDuplicates()
+    {
+        return duplicates;
+    }
+
+    private record Key(Diagnostic.Kind kind, String rule)
+    {
+    }
+
+    private record Reported(Element element, String message)
+    {
+    }
+}
@@ -0,0 +1,236 @@
+package com.niton.compile.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.tools.Diagnostic;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.niton.compile.ProcessingUtils;
+
+/**
+ * Streams the diagnostics of a {@link ProcessingLogger} to a file as JSON lines, one object per diagnostic:
+ * <pre>
+ * {"timestamp":"2024-01-01T12:00:00Z","round":1,"processor":"com.example.MyProcessor","element":"com.example.Foo","kind":"ERROR","message":"..."}
+ * </pre>
+ * {@code element} is null for messages without element, members are named {@code com.example.Foo#bar(int)}.
+ * <p>
+ * All processors of a compilation that export to the same file share one buffered writer, the file is truncated
+ * when the first of them opens it. Lines are written to the file at the end of every round ({@link #flush()}) and
+ * when the last processor {@link #close() closes} its exporter. The writers belong to the compilation, if it is
+ * aborted before the exporters are closed they are released together with it.
+ * </p>
+ * <p>
+ * Failing to write does not interrupt the compilation, the exporter stops exporting and {@link #close()} throws the
+ * first failure.
+ * </p>
+ */
+public final class DiagnosticExporter implements AutoCloseable
+{
+    private final SharedFile file;
+    private final String processor;
+    private volatile int round;
+    private boolean closed;
+
+    private DiagnosticExporter(SharedFile file, String processor)
+    {
+        this.file = file;
+        this.processor = processor;
+    }
+
+    /**
+     * @param processingEnv the environment of the processor, identifies the compilation the file is shared in
+     * @param file          the file to write to
+     * @param processor     the name of the processor exporting the diagnostics
+     * @return an exporter writing to the given file
+     * @throws IOException if the file can not be created
+     */
+    @NotNull
+    public static DiagnosticExporter open(@NotNull ProcessingEnvironment processingEnv, @NotNull Path file,
+        @NotNull String processor) throws IOException
+    {
+        var path = file.toAbsolutePath().normalize();
+        var open = CompilationScope.of(processingEnv).get(OpenFiles.class, OpenFiles::new);
+        synchronized (open)
+        {
+            var shared = open.files.get(path);
+            if (shared == null)
+            {
+                if (path.getParent() != null)
+                    Files.createDirectories(path.getParent());
+                shared = new SharedFile(open, path, Files.newBufferedWriter(path, StandardCharsets.UTF_8));
+                open.files.put(path, shared);
+            }
+            shared.users++;
+            return new DiagnosticExporter(shared, processor);
+        }
+    }
+
+    /**
+     * Marks the start of the next round, diagnostics exported afterwards belong to it
+     */
+    void startRound()
+    {
+        round++;
+    }
+
+    /**
+     * @param kind    the kind of the diagnostic
+     * @param element the element the diagnostic is about, null if there is none
+     * @param message the formatted message
+     */
+    public void export(@NotNull Diagnostic.Kind kind, @Nullable Element element, @NotNull String message)
+    {
+        if (closed)
+            return;
+        var line = new StringBuilder(128 + message.length());
+        line.append("{\"timestamp\":\"").append(Instant.now()).append('"')
+            .append(",\"round\":").append(round)
+            .append(",\"processor\":");
+        appendString(line, processor);
+        line.append(",\"element\":");
+        if (element == null)
+            line.append("null");
+        else
+            appendString(line, ProcessingUtils.qualifiedName(element));
+        line.append(",\"kind\":\"").append(kind.name()).append('"')
+            .append(",\"message\":");
+        appendString(line, message);
+        line.append("}\n");
+        file.write(line);
+    }
+
+    /**
+     * Writes the exported lines to the file
+     */
+    public void flush()
+    {
+        if (!closed)
+            file.flush();
+    }
+
+    /**
+     * Stops exporting, the file is closed when every exporter writing to it is closed
+     *
+     * @throws IOException the first failure of writing to the file
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+            return;
+        closed = true;
+        synchronized (file.owner)
+        {
+            if (--file.users == 0)
+            {
+                file.owner.files.remove(file.path);
+                file.close();
+            }
+            else
+                file.flush();
+        }
+        if (file.failure != null)
+            throw file.failure;
+    }
+
+    private static void appendString(StringBuilder json, String value)
+    {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            var c = value.charAt(i);
+            switch (c)
+            {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default ->
+                {
+                    if (c < 0x20)
+                        json.append(String.format("\\u%04x", (int) c));
+                    else
+                        json.append(c);
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * The files exported to in a compilation, a {@link CompilationScope} value
+     */
+    private static final class OpenFiles
+    {
+        private final Map<Path, SharedFile> files = new HashMap<>();
+    }
+
+    private static final class SharedFile
+    {
+        private final OpenFiles owner;
+        private final Path path;
+        private final Writer writer;
+        private int users;
+        private volatile IOException failure;
+
+        private SharedFile(OpenFiles owner, Path path, Writer writer)
+        {
+            this.owner = owner;
+            this.path = path;
+            this.writer = writer;
+        }
+
+        private synchronized void write(CharSequence line)
+        {
+            if (failure != null)
+                return;
+            try
+            {
+                writer.append(line);
+            }
+            catch (IOException e)
+            {
+                failure = e;
+            }
+        }
+
+        private synchronized void flush()
+        {
+            if (failure != null)
+                return;
+            try
+            {
+                writer.flush();
+            }
+            catch (IOException e)
+            {
+                failure = e;
+            }
+        }
+
+        private synchronized void close()
+        {
+            try
+            {
+                writer.close();
+            }
+            catch (IOException e)
+            {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+    }
+}
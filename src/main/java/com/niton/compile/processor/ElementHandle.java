@@ -0,0 +1,67 @@
+package com.niton.compile.processor;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.QualifiedNameable;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Refers to an element by name so it can be looked up again in a later round.
+ * <p>
+ * Elements of one round must not be used in later rounds, javac may have replaced them (for example once a type they
+ * refer to was generated). Members, parameters and type parameters are referred to by their closest enclosing type,
+ * since their own names can change when types they refer to are resolved. Local and anonymous classes (and their
+ * members) can not be referred to, they have no qualified name.
+ * </p>
+ *
+ * @param kind          {@link ElementKind#PACKAGE}, {@link ElementKind#MODULE} or the kind of a type
+ * @param qualifiedName the qualified name of the package, module or type
+ */
+public record ElementHandle(@NotNull ElementKind kind, @NotNull String qualifiedName)
+{
+    /**
+     * @param element the element to refer to
+     * @return a handle of the element or the type it is declared in
+     * @throws IllegalArgumentException if the element is not declared in a type, package or module or is declared in a
+     *                                  local or anonymous class
+     */
+    @NotNull
+    public static ElementHandle of(@NotNull Element element)
+    {
+        var current = element;
+        while (current != null && !(current instanceof QualifiedNameable))
+            current = current.getEnclosingElement();
+        if (current == null)
+            throw new IllegalArgumentException(element + " is not declared in a type, package or module");
+        var qualifiedName = ((QualifiedNameable) current).getQualifiedName().toString();
+        //unnamed packages and modules can be looked up by the empty name, local and anonymous classes can not
+        if (qualifiedName.isEmpty() && current instanceof TypeElement)
+            throw new IllegalArgumentException(element + " is declared in a local or anonymous class");
+        return new ElementHandle(current.getKind(), qualifiedName);
+    }
+
+    /**
+     * @param elements the element utils of the current round
+     * @return the element of the current round, null if it does not exist (anymore)
+     */
+    @Nullable
+    public Element resolve(@NotNull Elements elements)
+    {
+        return switch (kind)
+        {
+            case PACKAGE -> elements.getPackageElement(qualifiedName);
+            case MODULE -> elements.getModuleElement(qualifiedName);
+            default -> elements.getTypeElement(qualifiedName);
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        return qualifiedName;
+    }
+}
@@ -0,0 +1,112 @@
+package com.niton.compile.processor;
+
+import java.lang.annotation.Annotation;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.niton.compile.ProcessingUtils;
+
+/**
+ * Remembers which elements a processor already processed, across rounds.
+ * <p>
+ * Elements are recorded by their {@link ProcessingUtils#qualifiedName(Element) qualified name}, so the same declaration
+ * is recognized in later rounds even though javac hands out new element instances. The {@code getNew...} views return
+ * only the elements of a round that were not recorded yet. Use them instead of checking with
+ * {@link javax.lang.model.util.Elements#getTypeElement(CharSequence)} whether a class was generated already.
+ * </p>
+ * <p>
+ * {@link BaseProcessor#getLedger()} is the ledger of a processor, {@link ProcessingStep}s have their own ledgers that
+ * the processor maintains: elements a step processed without deferring them are not passed to it again.
+ * </p>
+ */
+public final class ElementLedger
+{
+    private final Set<String> processed = new HashSet<>();
+
+    /**
+     * @param element the element that was processed
+     * @return true if the element was not recorded before
+     */
+    public boolean record(@NotNull Element element)
+    {
+        return processed.add(ProcessingUtils.qualifiedName(element));
+    }
+
+    /**
+     * @param elements the elements that were processed
+     */
+    public void recordAll(@NotNull Collection<? extends Element> elements)
+    {
+        for (var element : elements)
+            record(element);
+    }
+
+    /**
+     * @param element the element to check
+     * @return true if the element was recorded in this or an earlier round
+     */
+    public boolean contains(@NotNull Element element)
+    {
+        return processed.contains(ProcessingUtils.qualifiedName(element));
+    }
+
+    /**
+     * @return the number of recorded elements
+     */
+    public int size()
+    {
+        return processed.size();
+    }
+
+    /**
+     * @param elements the elements to filter
+     * @return the elements that were not recorded yet, in iteration order
+     */
+    @NotNull
+    public <E extends Element> Set<E> getNew(@NotNull Collection<? extends E> elements)
+    {
+        var result = new LinkedHashSet<E>();
+        for (var element : elements)
+        {
+            if (!contains(element))
+                result.add(element);
+        }
+        return result;
+    }
+
+    /**
+     * @return {@link RoundEnvironment#getRootElements()} without the recorded elements
+     */
+    @NotNull
+    public Set<Element> getNewRootElements(@NotNull RoundEnvironment roundEnv)
+    {
+        return getNew(roundEnv.getRootElements());
+    }
+
+    /**
+     * @return {@link RoundEnvironment#getElementsAnnotatedWith(TypeElement)} without the recorded elements
+     */
+    @NotNull
+    public Set<Element> getNewElementsAnnotatedWith(@NotNull RoundEnvironment roundEnv, @NotNull TypeElement annotation)
+    {
+        return getNew(roundEnv.getElementsAnnotatedWith(annotation));
+    }
+
+    /**
+     * @return {@link RoundEnvironment#getElementsAnnotatedWith(Class)} without the recorded elements
+     */
+    @NotNull
+    public Set<Element> getNewElementsAnnotatedWith(@NotNull RoundEnvironment roundEnv,
+        @NotNull Class<? extends Annotation> annotation)
+    {
+        return getNew(roundEnv.getElementsAnnotatedWith(annotation));
+    }
+}
@@ -0,0 +1,78 @@
+package com.niton.compile.processor;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.annotation.processing.Generated;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.palantir.javapoet.AnnotationSpec;
+
+/**
+ * Creates the {@link Generated} annotation that is added to every class written by a {@link BaseProcessor}.
+ * <p>
+ * By default the current time is used as date. For reproducible builds a fixed date is taken from
+ * {@link ProcessorOptions#GENERATED_DATE} or the <a href="https://reproducible-builds.org/specs/source-date-epoch/">SOURCE_DATE_EPOCH</a>
+ * environment variable, with {@link ProcessorOptions#REPRODUCIBLE} and no fixed date the date is left out.
+ * An invalid date is reported and ignored, the next source (or no fixed date) is used instead.
+ * </p>
+ */
+final class GeneratedAnnotation
+{
+    static final String SOURCE_DATE_EPOCH = "SOURCE_DATE_EPOCH";
+
+    private final boolean reproducible;
+    @Nullable
+    private final String fixedDate;
+
+    private GeneratedAnnotation(boolean reproducible, @Nullable String fixedDate)
+    {
+        this.reproducible = reproducible;
+        this.fixedDate = fixedDate;
+    }
+
+    /**
+     * @param options     the processor options
+     * @param environment the system environment, used to read {@value SOURCE_DATE_EPOCH}
+     * @param invalid     receives the failure of every invalid date
+     */
+    @NotNull
+    static GeneratedAnnotation fromOptions(@NotNull Map<String, String> options, @NotNull Map<String, String> environment,
+        @NotNull Consumer<IllegalArgumentException> invalid)
+    {
+        var reproducible = ProcessorOptions.getBoolean(options, ProcessorOptions.REPRODUCIBLE, false);
+        var epoch = readEpoch(options, ProcessorOptions.GENERATED_DATE, invalid);
+        if (epoch < 0)
+            epoch = readEpoch(environment, SOURCE_DATE_EPOCH, invalid);
+        var fixedDate = epoch < 0 ? null : Instant.ofEpochSecond(epoch).toString();
+        return new GeneratedAnnotation(reproducible, fixedDate);
+    }
+
+    private static long readEpoch(Map<String, String> source, String key, Consumer<IllegalArgumentException> invalid)
+    {
+        try
+        {
+            return ProcessorOptions.getLong(source, key, -1);
+        }
+        catch (IllegalArgumentException e)
+        {
+            invalid.accept(e);
+            return -1;
+        }
+    }
+
+    @NotNull
+    AnnotationSpec create(@NotNull String generator)
+    {
+        var builder = AnnotationSpec.builder(Generated.class).addMember("value", "$S", generator);
+        if (fixedDate != null)
+            builder.addMember("date", "$S", fixedDate);
+        else if (!reproducible)
+            builder.addMember("date", "$S", ZonedDateTime.now().toString());
+        return builder.build();
+    }
+}
@@ -0,0 +1,187 @@
+package com.niton.compile.processor;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Answers subtype and assignability questions for type elements from their supertype closures.
+ * <p>
+ * The first question about a type element walks its {@link javax.lang.model.util.Types#directSupertypes(TypeMirror)
+ * supertypes} once and keeps all of them (erased, the element itself included) as a bitset of ids interned by qualified
+ * name. Every later question about the element, for any supertype, is a lookup of one bit. Closures of supertypes are
+ * shared, walking a hierarchy visits each type once.
+ * </p>
+ * <p>
+ * Only the erasure of a type is looked up: raw types, non generic types and the generic declaration of a type
+ * ({@code List<E>} as returned by {@link SymbolCache#getType(Class)}) are answered from the closure. Parameterized
+ * supertypes like {@code List<String>}, non declared types and local or anonymous classes are delegated to
+ * {@link javax.lang.model.util.Types}. Unlike {@code Types}, which does not relate the type variables of two generic
+ * declarations, every implementation of {@code List} is a subtype of {@code List<E>}.
+ * </p>
+ * <p>
+ * Like the {@link SymbolCache} the oracle is only valid for one round and not thread safe. Use
+ * {@link #uncached(ProcessingEnvironment)} if nobody invalidates the oracle.
+ * </p>
+ */
+public final class HierarchyOracle
+{
+    private final ProcessingEnvironment env;
+    /**
+     * The ids of all types seen in a closure, by qualified name
+     */
+    private final Map<String, Integer> typeIds = new HashMap<>();
+    /**
+     * The ids of all supertypes of a type, by qualified name of the type
+     */
+    private final Map<String, BitSet> closures = new HashMap<>();
+    private long hits;
+    private long misses;
+    private final boolean caching;
+
+    public HierarchyOracle(@NotNull ProcessingEnvironment env)
+    {
+        this(env, true);
+    }
+
+    private HierarchyOracle(@NotNull ProcessingEnvironment env, boolean caching)
+    {
+        this.env = env;
+        this.caching = caching;
+    }
+
+    /**
+     * @param env the environment to check the types with
+     * @return an oracle that asks the compiler every time, for owners that do not {@link #invalidate() invalidate} it
+     */
+    @NotNull
+    public static HierarchyOracle uncached(@NotNull ProcessingEnvironment env)
+    {
+        return new HierarchyOracle(env, false);
+    }
+
+    /**
+     * @return true if the type of the element is a subtype of the given type, see {@link javax.lang.model.util.Types#isSubtype(TypeMirror, TypeMirror)}
+     */
+    public boolean isSubtype(@NotNull TypeElement element, @NotNull TypeMirror supertype)
+    {
+        var known = lookup(element, supertype);
+        if (known != null)
+            return known;
+        misses++;
+        return env.getTypeUtils().isSubtype(element.asType(), supertype);
+    }
+
+    /**
+     * Assignability of a class type to a declared type is subtyping of the erasures (unchecked conversion), so both
+     * questions are answered from the same closure.
+     *
+     * @return true if the type of the element is assignable to the given type, see {@link javax.lang.model.util.Types#isAssignable(TypeMirror, TypeMirror)}
+     */
+    public boolean isAssignable(@NotNull TypeElement element, @NotNull TypeMirror target)
+    {
+        var known = lookup(element, target);
+        if (known != null)
+            return known;
+        misses++;
+        return env.getTypeUtils().isAssignable(element.asType(), target);
+    }
+
+    /**
+     * @return if the supertype is in the closure of the element, null if the question can not be answered by a closure
+     */
+    @Nullable
+    private Boolean lookup(TypeElement element, TypeMirror supertype)
+    {
+        if (!caching)
+            return null;
+        var supertypeName = erasedName(supertype);
+        var name = element.getQualifiedName().toString();
+        if (supertypeName == null || name.isEmpty())
+            return null;
+        var closure = closures.get(name);
+        if (closure == null)
+        {
+            misses++;
+            closure = closureOf(element);
+        }
+        else
+            hits++;
+        var id = typeIds.get(supertypeName);
+        return id != null && closure.get(id);
+    }
+
+    /**
+     * @return the qualified name of the erasure of the type if looking it up in a closure gives the right answer
+     */
+    @Nullable
+    private static String erasedName(TypeMirror type)
+    {
+        if (type.getKind() != TypeKind.DECLARED
+            || !(((DeclaredType) type).asElement() instanceof TypeElement typeElement))
+            return null;
+        //a parameterized type needs the type arguments to be checked, the generic declaration itself does not
+        if (!((DeclaredType) type).getTypeArguments().isEmpty() && typeElement.asType() != type)
+            return null;
+        var name = typeElement.getQualifiedName().toString();
+        return name.isEmpty() ? null : name;
+    }
+
+    private BitSet closureOf(TypeElement element)
+    {
+        var name = element.getQualifiedName().toString();
+        var closure = closures.get(name);
+        if (closure != null)
+            return closure;
+        closure = new BitSet();
+        //a cyclic (erroneous) hierarchy ends at the type itself instead of looping
+        closures.put(name, closure);
+        closure.set(idOf(name));
+        for (var supertype : env.getTypeUtils().directSupertypes(element.asType()))
+        {
+            if (supertype instanceof DeclaredType declared && declared.asElement() instanceof TypeElement typeElement
+                && !typeElement.getQualifiedName().isEmpty())
+                closure.or(closureOf(typeElement));
+        }
+        return closure;
+    }
+
+    private int idOf(String qualifiedName)
+    {
+        return typeIds.computeIfAbsent(qualifiedName, n -> typeIds.size());
+    }
+
+    /**
+     * Forgets all closures, has to be called when a round is over
+     */
+    public void invalidate()
+    {
+        typeIds.clear();
+        closures.clear();
+    }
+
+    /**
+     * @return the number of questions answered from a known closure
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return the number of questions that needed a closure to be computed or were delegated to the compiler
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+}
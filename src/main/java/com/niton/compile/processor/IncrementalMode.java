@@ -0,0 +1,60 @@
+package com.niton.compile.processor;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The incremental annotation processing category of a processor as understood by Gradle.
+ * <p>
+ * Gradle only compiles incrementally if it knows which sources a generated file depends on. A {@link BaseProcessor}
+ * declares its category with {@link BaseProcessor#getIncrementalMode()} and passes the originating elements of each
+ * generated type to the filer (see {@link BaseProcessor#writeClass(String, com.palantir.javapoet.TypeSpec, javax.lang.model.element.Element...)}).
+ * </p>
+ * <p>
+ * Gradle reads the category of a processor from the {@code META-INF/gradle/incremental.annotation.processors} resource
+ * in the processor jar <b>before</b> the processor runs, so it cannot be written at compile time.
+ * Register your processor once as {@code com.example.MyProcessor,dynamic} in that resource and the category
+ * declared here will be reported to Gradle through {@link BaseProcessor#getSupportedOptions()}.
+ * </p>
+ *
+ * @see <a href="https://docs.gradle.org/current/userguide/java_plugin.html#sec:incremental_annotation_processing">Gradle incremental annotation processing</a>
+ */
+public enum IncrementalMode
+{
+    /**
+     * Every generated type has exactly one originating element and only looks at that element (and its members and supertypes).
+     */
+    ISOLATING("org.gradle.annotation.processing.isolating"),
+    /**
+     * Generated types may aggregate many annotated elements, every generated type still lists the elements it is derived from.
+     */
+    AGGREGATING("org.gradle.annotation.processing.aggregating"),
+    /**
+     * The processor makes no promises, Gradle will fall back to a full recompilation.
+     */
+    NONE(null);
+
+    private final String gradleOption;
+
+    IncrementalMode(String gradleOption)
+    {
+        this.gradleOption = gradleOption;
+    }
+
+    /**
+     * @return the option a dynamic processor has to report to Gradle to be treated as this category, null for {@link #NONE}
+     */
+    @Nullable
+    public String getGradleOption()
+    {
+        return gradleOption;
+    }
+
+    /**
+     * @param processor the processor to describe
+     * @return the line to put into {@code META-INF/gradle/incremental.annotation.processors} for the given processor
+     */
+    public static String descriptorEntry(Class<? extends BaseProcessor> processor)
+    {
+        return processor.getName() + ",dynamic";
+    }
+}
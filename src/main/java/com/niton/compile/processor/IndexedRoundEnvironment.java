@@ -0,0 +1,219 @@
+package com.niton.compile.processor;
+
+import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ModuleElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementScanner14;
+import javax.lang.model.util.Elements;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link RoundEnvironment} that answers {@link #getElementsAnnotatedWith(TypeElement)} from an index instead of
+ * scanning all root elements for every call.
+ * <p>
+ * The index of annotation type to annotated elements is built with a single traversal of the root elements when the
+ * first annotated elements are requested. The traversal is the same as the one of javac: root elements, their members,
+ * parameters and type parameters, but not the types in a package or module, and inherited annotations are included
+ * ({@link Elements#getAllAnnotationMirrors(Element)}). Elements are returned in traversal order as unmodifiable sets.
+ * </p>
+ * <p>
+ * All processors of a compilation share the index of a round ({@link #of(ProcessingEnvironment, RoundEnvironment)}),
+ * {@link BaseProcessor}s receive it in {@link BaseProcessor#performProcessing(Set, RoundEnvironment)} and their
+ * interceptors. It is replaced as soon as javac starts the next round. The compilation only references the index
+ * weakly, callers of {@link #of(ProcessingEnvironment, RoundEnvironment)} keep it until the round is over so the other
+ * processors of the round find it.
+ * </p>
+ */
+public final class IndexedRoundEnvironment implements RoundEnvironment
+{
+    private final RoundEnvironment roundEnv;
+    private final Elements elements;
+    private volatile Map<TypeElement, Set<Element>> index;
+
+    /**
+     * @param roundEnv the environment to index
+     * @param elements used to resolve inherited annotations and annotation classes
+     */
+    public IndexedRoundEnvironment(@NotNull RoundEnvironment roundEnv, @NotNull Elements elements)
+    {
+        this.roundEnv = roundEnv;
+        this.elements = elements;
+    }
+
+    /**
+     * @param processingEnv the environment of the processor
+     * @param roundEnv      the environment of the current round
+     * @return the index of the round shared by all processors of the compilation, {@code roundEnv} itself if it is
+     * null or the environment provides no {@link ProcessingEnvironment#getElementUtils() element utils}
+     */
+    @Nullable
+    public static RoundEnvironment of(@NotNull ProcessingEnvironment processingEnv, @Nullable RoundEnvironment roundEnv)
+    {
+        if (roundEnv == null || roundEnv instanceof IndexedRoundEnvironment || processingEnv.getElementUtils() == null)
+            return roundEnv;
+        //the fake last round of a ProcessorHost is already backed by the index
+        if (roundEnv instanceof LastRoundInterceptor.FakeEndRoundEnv fake && fake.isIndexed())
+            return roundEnv;
+        return CompilationScope.of(processingEnv).get(Current.class, Current::new)
+            .get(roundEnv, processingEnv.getElementUtils());
+    }
+
+    @Override
+    public boolean processingOver()
+    {
+        return roundEnv.processingOver();
+    }
+
+    @Override
+    public boolean errorRaised()
+    {
+        return roundEnv.errorRaised();
+    }
+
+    @Override
+    public Set<? extends Element> getRootElements()
+    {
+        return roundEnv.getRootElements();
+    }
+
+    @Override
+    public Set<? extends Element> getElementsAnnotatedWith(TypeElement annotation)
+    {
+        if (annotation.getKind() != ElementKind.ANNOTATION_TYPE)
+            throw new IllegalArgumentException("Not an annotation type: " + annotation);
+        return getIndex().getOrDefault(annotation, Set.of());
+    }
+
+    @Override
+    public Set<? extends Element> getElementsAnnotatedWith(Class<? extends Annotation> annotation)
+    {
+        if (!annotation.isAnnotation())
+            throw new IllegalArgumentException("Not an annotation type: " + annotation);
+        var name = annotation.getCanonicalName();
+        if (name == null)
+            return Set.of();
+        var type = elements.getTypeElement(name);
+        if (type == null)
+            return Set.of();
+        return getIndex().getOrDefault(type, Set.of());
+    }
+
+    /**
+     * @return the annotation types present in this round, whether they are processed or not
+     */
+    @NotNull
+    public Set<TypeElement> getAnnotations()
+    {
+        return Collections.unmodifiableSet(getIndex().keySet());
+    }
+
+    @NotNull
+    private Map<TypeElement, Set<Element>> getIndex()
+    {
+        var current = index;
+        if (current == null)
+        {
+            synchronized (this)
+            {
+                current = index;
+                if (current == null)
+                    index = current = buildIndex();
+            }
+        }
+        return current;
+    }
+
+    @NotNull
+    private Map<TypeElement, Set<Element>> buildIndex()
+    {
+        var built = index(roundEnv.getRootElements(), elements);
+        built.replaceAll((annotation, annotated) -> Collections.unmodifiableSet(annotated));
+        return built;
+    }
+
+    /**
+     * Indexes the given elements and everything they enclose like javac indexes the root elements of a round
+     *
+     * @param roots    the elements to scan
+     * @param elements used to resolve inherited annotations
+     * @return the annotated elements by annotation type
+     */
+    @NotNull
+    static Map<TypeElement, Set<Element>> index(@NotNull Collection<? extends Element> roots, @NotNull Elements elements)
+    {
+        var scanner = new IndexScanner(elements);
+        for (var element : roots)
+            scanner.scan(element, null);
+        return scanner.index;
+    }
+
+    private static class IndexScanner extends ElementScanner14<Void, Void>
+    {
+        private final Map<TypeElement, Set<Element>> index = new HashMap<>();
+        private final Elements elements;
+
+        private IndexScanner(Elements elements)
+        {
+            this.elements = elements;
+        }
+
+        @Override
+        public Void scan(Element element, Void unused)
+        {
+            for (AnnotationMirror mirror : elements.getAllAnnotationMirrors(element))
+            {
+                var annotation = (TypeElement) mirror.getAnnotationType().asElement();
+                index.computeIfAbsent(annotation, a -> new LinkedHashSet<>()).add(element);
+            }
+            return element.accept(this, unused);
+        }
+
+        @Override
+        public Void visitModule(ModuleElement element, Void unused)
+        {
+            return null;
+        }
+
+        @Override
+        public Void visitPackage(PackageElement element, Void unused)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * The index of the current round of a compilation. It references the round and the element utils, so it is only
+     * kept weakly as a {@link CompilationScope} value.
+     */
+    private static final class Current
+    {
+        private WeakReference<IndexedRoundEnvironment> current = new WeakReference<>(null);
+
+        private synchronized IndexedRoundEnvironment get(RoundEnvironment roundEnv, Elements elements)
+        {
+            var indexed = current.get();
+            if (indexed == null || indexed.roundEnv != roundEnv)
+            {
+                indexed = new IndexedRoundEnvironment(roundEnv, elements);
+                current = new WeakReference<>(indexed);
+            }
+            return indexed;
+        }
+    }
+}
@@ -10,32 +10,71 @@ import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.util.Collections;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * This processor interceptor should be used as base of a processor to bypass the bug
  * <a href="https://bugs.openjdk.java.net/browse/JDK-8256826">JDK-8256826</a> in OpenJDK javac.
  * <p>
  * It archives this by creating a fake last round. As a byproduct "strange classes" will be generated. There is not much
- * that one can do to prevent this. Residual class example <b>MyProcessor$jdk_8256826_bug$round5</b>
+ * that one can do to prevent this. Residual class example <b>com_example_MyProcessor$jdk_8256826_bug$round5</b>
+ * </p>
+ * <p>
+ * All processors of a compilation share the markers: the first processor running in a round writes its marker for
+ * that round, the others recognize the round by its root elements and skip it. A compilation with many processors
+ * therefore only gets one extra class (and round) per round. Markers are named after the processor writing them and
+ * any class named like a marker ends the rounds, so processors loaded by different class loaders (which do not share
+ * the markers) can not collide and still recognize each others markers.
  * </p>
  *
  * @author Nils Brugger (u0eiuaw)
  */
 class LastRoundInterceptor extends ProcessorInterceptor {
     private static final String LAST_ROUND_BUG = "jdk_8256826_bug";
-    private int round;
+    private static final String MARKER_INFIX = "$" + LAST_ROUND_BUG + "$round";
     private boolean processingOver;
+    private int round;
     private final String processorClassName;
+    private final IncrementalMode incrementalMode;
+    private final Markers markers;
 
     protected LastRoundInterceptor(
         ProcessingEnvironment processingEnv,
         ProcessingLogger logger,
         ProcessingVerifier verifier,
         String processorClassName
+    ) {
+        this(processingEnv, logger, verifier, processorClassName, IncrementalMode.NONE);
+    }
+
+    /**
+     * @param incrementalMode the mode of the processor, the markers of an {@link IncrementalMode#ISOLATING} processor
+     *                        get one root element of their round as originating element as Gradle requires it
+     */
+    protected LastRoundInterceptor(
+        ProcessingEnvironment processingEnv,
+        ProcessingLogger logger,
+        ProcessingVerifier verifier,
+        String processorClassName,
+        IncrementalMode incrementalMode
     ) {
         super(processingEnv, logger, verifier);
         this.processorClassName = processorClassName;
+        this.incrementalMode = incrementalMode;
+        this.markers = CompilationScope.of(processingEnv).get(Markers.class, Markers::new);
+    }
+
+    /**
+     * @param processingEnv the environment of the processor
+     * @return false if the option {@link ProcessorOptions#JAVAC_BUG_FIXED_RELEASE} names a release that is not newer
+     * than the running javac
+     * @throws IllegalArgumentException if the option is not a number
+     */
+    static boolean isBugPresent(ProcessingEnvironment processingEnv) {
+        var fixedRelease = ProcessorOptions.getInt(processingEnv.getOptions(), ProcessorOptions.JAVAC_BUG_FIXED_RELEASE, 0);
+        return fixedRelease <= 0 || Runtime.version().feature() < fixedRelease;
     }
 
     @Override
@@ -55,11 +94,16 @@ class LastRoundInterceptor extends ProcessorInterceptor {
 
             return false;//the javac last round is not allowed to be used
         }
-        var bugfileName = String.format("%s$%s$round%d", processorClassName, LAST_ROUND_BUG, round);
         var fakeLastRound = isFakeLastRound(roundEnv);
 
         if (!fakeLastRound) {
-            writeDummyClass(bugfileName, processingEnv);
+            var rootElements = roundEnv.getRootElements();
+            if (markers.claim(rootElements))
+                writeDummyClass(
+                    String.format("%s%s%d", processorClassName.replace('.', '_'), MARKER_INFIX, round),
+                    originatingElement(rootElements),
+                    processingEnv
+                );
         } else {
             logger.info("[%s] Fake last round for %s", getClass().getSimpleName(), processorClassName);
         }
@@ -68,14 +112,14 @@ class LastRoundInterceptor extends ProcessorInterceptor {
         return processor.process(set, new FakeEndRoundEnv(roundEnv, fakeLastRound));
     }
 
-    private void writeDummyClass(String bugfileName, ProcessingEnvironment processingEnv) {
+    private void writeDummyClass(String bugfileName, Element originatingElement, ProcessingEnvironment processingEnv) {
         logger.info("[%s] Write file %s to prevent javac bug JDK-8256826", getClass().getSimpleName(), bugfileName);
+        var marker = TypeSpec.classBuilder(bugfileName).addModifiers(Modifier.FINAL);
+        if (originatingElement != null)
+            marker.addOriginatingElement(originatingElement);
         try {
             //Creating this file will prevent javac from creating the errornous "lastRound".
-            JavaFile.builder(
-                    getClass().getPackageName(), TypeSpec.classBuilder(bugfileName)
-                                                     .addModifiers(Modifier.FINAL).build()
-                )
+            JavaFile.builder(getClass().getPackageName(), marker.build())
                 .build()
                 .writeTo(processingEnv.getFiler());
         } catch (IOException e) {
@@ -83,14 +127,61 @@ class LastRoundInterceptor extends ProcessorInterceptor {
         }
     }
 
+    /**
+     * Gradle rebuilds everything if a type generated by an isolating processor does not have exactly one originating
+     * element. The marker does not depend on any source, so any root element (preferably a type) will do.
+     *
+     * @return the originating element of the marker of a round, null if the processor is not isolating
+     */
+    private Element originatingElement(Set<? extends Element> rootElements) {
+        if (incrementalMode != IncrementalMode.ISOLATING)
+            return null;
+        Element originating = null;
+        for (var element : rootElements) {
+            if (element instanceof TypeElement)
+                return element;
+            if (originating == null)
+                originating = element;
+        }
+        return originating;
+    }
+
+    /**
+     * A round consisting of markers only was caused by the workaround alone, an empty round counts as well.
+     * Markers of every processor count, including the ones of processors not sharing {@link Markers} with this one.
+     */
     private boolean isFakeLastRound(RoundEnvironment roundEnv) {
         return roundEnv.getRootElements()
                    .stream()
                    .map(Element::getSimpleName)
-                   .allMatch(n -> n.toString().contains(LAST_ROUND_BUG));
+                   .allMatch(n -> n.toString().contains(MARKER_INFIX));
     }
 
-    private static class FakeEndRoundEnv implements RoundEnvironment {
+    /**
+     * The rounds markers were written for, shared by the interceptors of all processors of a compilation
+     */
+    private static final class Markers {
+        /**
+         * The root elements of the round the last marker was written in. Rounds are told apart by their root elements
+         * rather than by the {@link RoundEnvironment}, which an interceptor may replace. The elements are referenced
+         * weakly, they belong to the compilation the scope is keyed by.
+         */
+        private final Set<Element> lastRound = Collections.newSetFromMap(new WeakHashMap<>());
+
+        /**
+         * @param rootElements the root elements of the round
+         * @return true if the caller has to write the marker of the round, false if another processor already did
+         */
+        private synchronized boolean claim(Set<? extends Element> rootElements) {
+            if (!rootElements.isEmpty() && lastRound.containsAll(rootElements))
+                return false;
+            lastRound.clear();
+            lastRound.addAll(rootElements);
+            return true;
+        }
+    }
+
+    static class FakeEndRoundEnv implements RoundEnvironment {
         private final RoundEnvironment roundEnv;
         private final boolean fakeLastRound;
 
@@ -99,6 +190,13 @@ class LastRoundInterceptor extends ProcessorInterceptor {
             this.fakeLastRound = fakeLastRound;
         }
 
+        /**
+         * @return true if the annotation queries are answered by an {@link IndexedRoundEnvironment}
+         */
+        boolean isIndexed() {
+            return roundEnv instanceof IndexedRoundEnvironment;
+        }
+
         @Override
         public boolean processingOver() {
             return fakeLastRound;
@@ -0,0 +1,68 @@
+package com.niton.compile.processor;
+
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The threshold of a {@link ProcessingLogger}, messages below it are dropped before they are formatted.
+ * Set for all processors with {@code -Aproto.log.level=warn} (see {@link ProcessorOptions#LOG_LEVEL}).
+ * <p>
+ * Errors fail the compilation and are never suppressed, so there is no level above {@link #ERROR}.
+ * </p>
+ */
+public enum LogLevel
+{
+    INFO(Diagnostic.Kind.NOTE),
+    WARN(Diagnostic.Kind.MANDATORY_WARNING),
+    ERROR(Diagnostic.Kind.ERROR);
+
+    private final Diagnostic.Kind kind;
+
+    LogLevel(Diagnostic.Kind kind)
+    {
+        this.kind = kind;
+    }
+
+    /**
+     * @return the kind of diagnostic messages of this level are reported as
+     */
+    @NotNull
+    public Diagnostic.Kind getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * @param level the level to compare with
+     * @return true if messages of this level pass a logger set to the given level
+     */
+    public boolean isEnabledAt(@NotNull LogLevel level)
+    {
+        return compareTo(level) >= 0;
+    }
+
+    /**
+     * @param value the name of the level, case insensitive. {@code note}, {@code warning} and {@code debug} are understood too
+     * @param defaultValue the level to use if value is null or blank
+     * @return the level
+     * @throws IllegalArgumentException if the value names no level
+     */
+    @NotNull
+    public static LogLevel parse(@Nullable String value, @NotNull LogLevel defaultValue)
+    {
+        if (value == null || value.isBlank())
+            return defaultValue;
+        return switch (value.trim().toLowerCase(Locale.ROOT))
+        {
+            case "info", "note", "debug" -> INFO;
+            case "warn", "warning" -> WARN;
+            case "error" -> ERROR;
+            default -> throw new IllegalArgumentException(String.format(
+                "Unknown log level '%s', use one of info, warn or error", value));
+        };
+    }
+}
@@ -0,0 +1,167 @@
+package com.niton.compile.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs work of a processor that does not need the javac model off the processor thread, for example reading schema
+ * files, rendering templates, hashing or rendering generated sources.
+ * <p>
+ * On Java 21 and newer every task runs on its own virtual thread, so blocking I/O is cheap. On older versions tasks
+ * run on a pool of daemon threads bounded by the number of processors.
+ * </p>
+ * <p>
+ * Work {@link #fork(Callable) forked} during a round is {@link #join() joined} by the {@link BaseProcessor} before
+ * the round ends, failures are reported as errors through the {@link ProcessingLogger} on the processor thread.
+ * Tasks must not use elements, types or the {@link javax.annotation.processing.Filer}: javac is not thread safe.
+ * They may log, messages of other threads are reported by the processor thread.
+ * </p>
+ */
+public final class ProcessingExecutor implements AutoCloseable
+{
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final ProcessingLogger logger;
+    private final List<Future<?>> forks = new ArrayList<>();
+
+    ProcessingExecutor(@NotNull ExecutorService executor, boolean virtual, @NotNull ProcessingLogger logger)
+    {
+        this.executor = executor;
+        this.virtual = virtual;
+        this.logger = logger;
+    }
+
+    /**
+     * @param logger the logger to report failed tasks to
+     * @return an executor using virtual threads if the runtime supports them, a bounded pool otherwise
+     */
+    @NotNull
+    public static ProcessingExecutor create(@NotNull ProcessingLogger logger)
+    {
+        var virtualThreads = newVirtualThreadPerTaskExecutor();
+        if (virtualThreads != null)
+            return new ProcessingExecutor(virtualThreads, true, logger);
+        var threads = Runtime.getRuntime().availableProcessors();
+        var pool = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            new WorkerFactory());
+        pool.allowCoreThreadTimeOut(true);
+        return new ProcessingExecutor(pool, false, logger);
+    }
+
+    /**
+     * Compiled for Java 17, so {@code Executors.newVirtualThreadPerTaskExecutor()} is looked up reflectively
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor()
+    {
+        if (Runtime.version().feature() < 21)
+            return null;
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Starts a task that is joined at the end of the current round at the latest
+     *
+     * @param task the work to do, must not use the javac model
+     * @return the result of the task, {@link Future#get()} waits for it
+     */
+    @NotNull
+    public <T> Future<T> fork(@NotNull Callable<T> task)
+    {
+        var future = executor.submit(task);
+        synchronized (forks)
+        {
+            forks.add(future);
+        }
+        return future;
+    }
+
+    /**
+     * Waits for all tasks forked so far and reports the failed ones as errors. Has to be called on the processor thread.
+     */
+    public void join()
+    {
+        List<Future<?>> joining;
+        synchronized (forks)
+        {
+            joining = new ArrayList<>(forks);
+            forks.clear();
+        }
+        for (var fork : joining)
+        {
+            try
+            {
+                fork.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                logger.fail(e);
+                return;
+            }
+            catch (ExecutionException e)
+            {
+                var cause = e.getCause();
+                logger.fail(cause instanceof Exception exception ? exception : e, true);
+            }
+        }
+    }
+
+    /**
+     * @return true if tasks run on virtual threads
+     */
+    public boolean isVirtual()
+    {
+        return virtual;
+    }
+
+    /**
+     * @return the underlying executor, tasks submitted directly are not joined
+     */
+    @NotNull
+    public ExecutorService getExecutorService()
+    {
+        return executor;
+    }
+
+    /**
+     * Joins all forked tasks and stops the executor
+     */
+    @Override
+    public void close()
+    {
+        join();
+        executor.shutdown();
+    }
+
+    private static final class WorkerFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable)
+        {
+            var thread = new Thread(runnable, "proto-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -4,26 +4,130 @@ import static java.lang.String.format;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.EnumMap;
+import java.util.Queue;
 import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
 
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.niton.compile.ProcessingUtils;
 
 /**
  * Logger for compile time processing.
+ * <p>
+ * Messages below the {@link LogLevel} of the logger are dropped before they are formatted, errors are always reported.
+ * Use the {@link Supplier} overloads for messages that are expensive to create.
+ * </p>
+ * <p>
+ * The logger can be used from any thread. javac only allows the processor thread (the thread that created the logger)
+ * to report diagnostics, messages logged on other threads are queued and reported by the processor thread with
+ * {@link #drain()}. They are formatted on the processor thread too, so the arguments may be elements.
+ * </p>
  */
 public class ProcessingLogger
 {
+    /**
+     * The number of annotations and root elements named by {@link #logRoundInfo(Set, RoundEnvironment)}
+     */
+    public static final int ROUND_SUMMARY_NAMES = 10;
+
     private final Messager messager;
+    private final LogLevel level;
+    @Nullable
+    private final DiagnosticBuffer buffer;
+    @Nullable
+    private final DiagnosticExporter exporter;
+    /**
+     * The only thread that may call the {@link Messager}, usually the one javac runs the processor on
+     */
+    private final Thread processorThread = Thread.currentThread();
+    private final Queue<Deferred> deferred = new ConcurrentLinkedQueue<>();
 
     public ProcessingLogger(Messager messager)
+    {
+        this(messager, LogLevel.INFO);
+    }
+
+    /**
+     * @param level the lowest level to report
+     */
+    public ProcessingLogger(Messager messager, @NotNull LogLevel level)
+    {
+        this(messager, level, null);
+    }
+
+    /**
+     * @param level  the lowest level to report
+     * @param buffer collects the messages until {@link #flush()} is called, null to report them immediately
+     */
+    public ProcessingLogger(Messager messager, @NotNull LogLevel level, @Nullable DiagnosticBuffer buffer)
+    {
+        this(messager, level, buffer, null);
+    }
+
+    /**
+     * @param level    the lowest level to report
+     * @param buffer   collects the messages until {@link #flush()} is called, null to report them immediately
+     * @param exporter streams every reported message to a file, null to not export them
+     */
+    public ProcessingLogger(Messager messager, @NotNull LogLevel level, @Nullable DiagnosticBuffer buffer,
+        @Nullable DiagnosticExporter exporter)
     {
         this.messager = messager;
+        this.level = level;
+        this.buffer = buffer;
+        this.exporter = exporter;
+    }
+
+    /**
+     * @return the lowest level this logger reports
+     */
+    @NotNull
+    public LogLevel getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * @return true if messages of the given level are reported
+     */
+    public boolean isEnabled(@NotNull LogLevel level)
+    {
+        return level.isEnabledAt(this.level);
+    }
+
+    /**
+     * Reports a message that is not related to an element
+     * @param level the level of the message
+     * @param msg the message, formatted according to the {@link String#format(String, Object...)} rules
+     * @param args the arguments to pass to  {@link String#format(String, Object...)}
+     */
+    public void log(@NotNull LogLevel level, @NotNull String msg, Object... args)
+    {
+        if (isEnabled(level))
+            print(level.getKind(), msg, args);
+    }
+
+    /**
+     * Reports a message that is not related to an element, the message is only created if the level is enabled
+     * @param level the level of the message
+     * @param msg creates the message
+     */
+    public void log(@NotNull LogLevel level, @NotNull Supplier<String> msg)
+    {
+        if (isEnabled(level))
+            print(level.getKind(), msg);
     }
 
     /**
@@ -31,7 +135,7 @@ public class ProcessingLogger
      */
     public void fail(@NotNull Exception exception)
     {
-        fail(exception.getMessage());
+        fail(exception, false);
     }
 
     /**
@@ -41,7 +145,9 @@ public class ProcessingLogger
      */
     public void fail(@NotNull Exception exception,boolean printStackTrace)
     {
-        fail(exception.getMessage());
+        //the message is no format string, it may contain user input like option values. Escaped instead of passed as
+        //argument of "%s", buffered diagnostics would group all exceptions as the same rule otherwise
+        fail(String.valueOf(exception.getMessage()).replace("%", "%%"));
         if(printStackTrace)
         {
             var sw = new StringWriter();
@@ -51,6 +157,25 @@ public class ProcessingLogger
         }
     }
 
+    /**
+     * Reports the violation of a rule by an element, the message is only created if the level is enabled.
+     * A {@link DiagnosticBuffer} groups the messages by the given rule instead of by the unformatted message, so
+     * messages that are built per element still count as one rule.
+     * @param level the level of the message, {@link LogLevel#ERROR} fails the compilation
+     * @param element the element that violates the rule
+     * @param rule identifies the rule, for example the message pattern before it is formatted for the element
+     * @param msg creates the message
+     */
+    public void log(@NotNull LogLevel level, @NotNull Element element, @NotNull String rule, @NotNull Supplier<String> msg)
+    {
+        if (!isEnabled(level))
+            return;
+        if (onProcessorThread())
+            report(level.getKind(), rule, msg.get(), element);
+        else
+            deferred.add(new Deferred(level.getKind(), true, element, rule, msg));
+    }
+
     /**
      * throws a compilation warning with a given message, will not fail compilation
      * @param element the element that caused the warning or the warning is related to. For example the field that violates a constraint
@@ -59,7 +184,19 @@ public class ProcessingLogger
      */
     public void warn(@NotNull Element element, @NotNull String msg, Object... args)
     {
-        messager.printMessage(Diagnostic.Kind.MANDATORY_WARNING, format(msg, args), element);
+        if (isEnabled(LogLevel.WARN))
+            print(Diagnostic.Kind.MANDATORY_WARNING, element, msg, args);
+    }
+
+    /**
+     * Same as {@link #warn(Element, String, Object...)}, the message is only created if warnings are enabled
+     * @param element the element that caused the warning or the warning is related to
+     * @param msg creates the message to add to the warning
+     */
+    public void warn(@NotNull Element element, @NotNull Supplier<String> msg)
+    {
+        if (isEnabled(LogLevel.WARN))
+            print(Diagnostic.Kind.MANDATORY_WARNING, element, msg);
     }
 
     /**
@@ -69,7 +206,18 @@ public class ProcessingLogger
      */
     public void info(@NotNull String msg, Object... args)
     {
-        messager.printMessage(Diagnostic.Kind.NOTE, format(msg, args));
+        if (isEnabled(LogLevel.INFO))
+            print(Diagnostic.Kind.NOTE, msg, args);
+    }
+
+    /**
+     * Same as {@link #info(String, Object...)}, the message is only created if info is enabled
+     * @param msg creates the message to add to the log
+     */
+    public void info(@NotNull Supplier<String> msg)
+    {
+        if (isEnabled(LogLevel.INFO))
+            print(Diagnostic.Kind.NOTE, msg);
     }
     /**
      * Adds info to the compilation log, is disabled by maven by default. Similar to the <i>DEBUG</i> log level
@@ -79,7 +227,19 @@ public class ProcessingLogger
      */
     public void info(@NotNull Element element,@NotNull String msg, Object... args)
     {
-        messager.printMessage(Diagnostic.Kind.NOTE, format(msg, args), element);
+        if (isEnabled(LogLevel.INFO))
+            print(Diagnostic.Kind.NOTE, element, msg, args);
+    }
+
+    /**
+     * Same as {@link #info(Element, String, Object...)}, the message is only created if info is enabled
+     * @param element the element that the message is related to
+     * @param msg creates the message to add to the log
+     */
+    public void info(@NotNull Element element, @NotNull Supplier<String> msg)
+    {
+        if (isEnabled(LogLevel.INFO))
+            print(Diagnostic.Kind.NOTE, element, msg);
     }
 
     /**
@@ -90,7 +250,7 @@ public class ProcessingLogger
      */
     public void fail(@NotNull Element element, @NotNull String msg, Object... args)
     {
-        messager.printMessage(Diagnostic.Kind.ERROR, format(msg, args), element);
+        print(Diagnostic.Kind.ERROR, element, msg, args);
     }
 
     /**
@@ -101,22 +261,181 @@ public class ProcessingLogger
      */
     public void fail(@NotNull String msg, Object... args)
     {
-        messager.printMessage(Diagnostic.Kind.ERROR, format(msg, args));
+        print(Diagnostic.Kind.ERROR, msg, args);
+    }
+
+    /**
+     * @return the exporter the reported messages are streamed to, null if they are not exported
+     */
+    @Nullable
+    DiagnosticExporter getExporter()
+    {
+        return exporter;
+    }
+
+    /**
+     * Reports all messages logged from other threads, then all buffered messages and writes the exported ones.
+     * Does nothing if this logger is not buffered and no other thread logged anything.
+     * <p>Has to be called on the processor thread.</p>
+     */
+    public void flush()
+    {
+        drain();
+        if (buffer != null)
+            buffer.flush();
+        if (exporter != null)
+            exporter.flush();
     }
 
     /**
-     * Logs the information about the current annotation processing round using {@link #info(String, Object...)}
+     * Reports the messages logged from other threads since the last call, in the order they were logged.
+     * {@link BaseProcessor}s drain their logger at the start and the end of every round.
+     * <p>Has to be called on the processor thread.</p>
+     */
+    public void drain()
+    {
+        Deferred message;
+        while ((message = deferred.poll()) != null)
+        {
+            var text = message.message().get();
+            var rule = message.rule() != null ? message.rule() : text;
+            if (message.withElement())
+                report(message.kind(), rule, text, message.element());
+            else
+                report(message.kind(), rule, text);
+        }
+    }
+
+    private boolean onProcessorThread()
+    {
+        return Thread.currentThread() == processorThread;
+    }
+
+    private void print(@NotNull Diagnostic.Kind kind, @NotNull String msg, Object[] args)
+    {
+        if (onProcessorThread())
+            report(kind, msg, format(msg, args));
+        else
+            deferred.add(new Deferred(kind, false, null, msg, () -> format(msg, args)));
+    }
+
+    private void print(@NotNull Diagnostic.Kind kind, @NotNull Supplier<String> msg)
+    {
+        if (onProcessorThread())
+        {
+            var message = msg.get();
+            report(kind, message, message);
+        }
+        else
+            deferred.add(new Deferred(kind, false, null, null, msg));
+    }
+
+    private void print(@NotNull Diagnostic.Kind kind, Element element, @NotNull String msg, Object[] args)
+    {
+        if (onProcessorThread())
+            report(kind, msg, format(msg, args), element);
+        else
+            deferred.add(new Deferred(kind, true, element, msg, () -> format(msg, args)));
+    }
+
+    private void print(@NotNull Diagnostic.Kind kind, Element element, @NotNull Supplier<String> msg)
+    {
+        if (onProcessorThread())
+        {
+            var message = msg.get();
+            report(kind, message, message, element);
+        }
+        else
+            deferred.add(new Deferred(kind, true, element, null, msg));
+    }
+
+    /**
+     * @param rule the unformatted message, groups the messages in the {@link DiagnosticBuffer}
+     */
+    private void report(@NotNull Diagnostic.Kind kind, @NotNull String rule, @NotNull String message)
+    {
+        if (exporter != null)
+            exporter.export(kind, null, message);
+        if (buffer != null)
+            buffer.add(kind, rule, message, null);
+        else
+            messager.printMessage(kind, message);
+    }
+
+    private void report(@NotNull Diagnostic.Kind kind, @NotNull String rule, @NotNull String message, Element element)
+    {
+        if (exporter != null)
+            exporter.export(kind, element, message);
+        if (buffer != null)
+            buffer.add(kind, rule, message, element);
+        else
+            messager.printMessage(kind, message, element);
+    }
+
+    /**
+     * Logs a summary of the current annotation processing round using {@link #info(String, Object...)},
+     * see {@link #logRoundInfo(Set, RoundEnvironment, int)}. Lists the first {@value #ROUND_SUMMARY_NAMES} names.
      * @param set the set of annotations that are being processed
      * @param roundEnv the current round environment
      */
     public void logRoundInfo(@NotNull Set<? extends TypeElement> set, @NotNull RoundEnvironment roundEnv)
     {
-        info("[%s] Process :%n\tis last: %s%n\thas error:%s%n\tAnnotations : %s%n\tInputs : %s",
+        logRoundInfo(set, roundEnv, ROUND_SUMMARY_NAMES);
+    }
+
+    /**
+     * Logs a summary of the current annotation processing round using {@link #info(String, Object...)}.
+     * The root elements are counted per kind and the annotated elements per annotation,
+     * only the first {@code maxNames} names are listed so the message stays small in large modules.
+     * Nothing is counted if info is disabled.
+     * @param set the set of annotations that are being processed
+     * @param roundEnv the current round environment
+     * @param maxNames how many annotations and root elements to name
+     */
+    public void logRoundInfo(@NotNull Set<? extends TypeElement> set, @NotNull RoundEnvironment roundEnv, int maxNames)
+    {
+        if (!isEnabled(LogLevel.INFO))
+            return;
+        var annotations = new StringBuilder().append(set.size());
+        var named = 0;
+        for (var annotation : set)
+        {
+            if (named++ == maxNames)
+            {
+                annotations.append(", ...");
+                break;
+            }
+            annotations.append(named == 1 ? ": @" : ", @").append(annotation.getQualifiedName())
+                .append(" (").append(roundEnv.getElementsAnnotatedWith(annotation).size()).append(')');
+        }
+        var rootElements = roundEnv.getRootElements();
+        var kinds = new EnumMap<ElementKind, Integer>(ElementKind.class);
+        var names = new StringJoiner(", ");
+        named = 0;
+        for (var element : rootElements)
+        {
+            kinds.merge(element.getKind(), 1, Integer::sum);
+            if (named++ < maxNames)
+                names.add(ProcessingUtils.qualifiedName(element));
+        }
+        if (named > maxNames)
+            names.add(String.format("... (%d more)", named - maxNames));
+        info("[%s] Process :%n\tis last: %s%n\thas error:%s%n\tAnnotations : %s%n\tInputs : %d %s %s",
             getClass().getSimpleName(),
             roundEnv.processingOver(),
             roundEnv.errorRaised(),
-            set,
-            roundEnv.getRootElements());
+            annotations,
+            named,
+            kinds,
+            names);
     }
 
+    /**
+     * A message logged from another thread, it is formatted on the processor thread since formatting may access elements.
+     * The rule groups the message in the {@link DiagnosticBuffer}, null if the message is its own rule.
+     */
+    private record Deferred(Diagnostic.Kind kind, boolean withElement, Element element, String rule,
+        Supplier<String> message)
+    {
+    }
 }
@@ -0,0 +1,228 @@
+package com.niton.compile.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.lang.model.element.Element;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Metrics of one processor per round, collected by the {@link ProfilingInterceptor}.
+ * <p>
+ * Work done before the first round (in {@link javax.annotation.processing.Processor#init(javax.annotation.processing.ProcessingEnvironment)})
+ * is counted as round 0.
+ * </p>
+ */
+public final class ProcessingMetrics
+{
+    private final List<Round> rounds = new ArrayList<>();
+    /**
+     * Replaced on the processor thread when a round starts, read by {@link #verified(Element, boolean)} on any thread
+     */
+    private volatile Round current = new Round(0);
+
+    public ProcessingMetrics()
+    {
+        rounds.add(current);
+    }
+
+    /**
+     * Starts collecting the metrics of the next round
+     *
+     * @param rootElements the number of root elements of the round
+     */
+    void startRound(int rootElements)
+    {
+        var round = new Round(rounds.size());
+        round.rootElements = rootElements;
+        rounds.add(round);
+        current = round;
+    }
+
+    void addProcessingTime(long nanos)
+    {
+        current.processingNanos += nanos;
+    }
+
+    void addWriteTime(long nanos)
+    {
+        current.writeNanos += nanos;
+    }
+
+    void addFile(long bytes)
+    {
+        current.files++;
+        current.bytes += bytes;
+    }
+
+    /**
+     * Counts a verification, can be called from any thread
+     */
+    void verified(Element element, boolean valid)
+    {
+        var round = current;
+        round.verifications.increment();
+        if (!valid)
+            round.failedVerifications.increment();
+    }
+
+    /**
+     * @return the metrics of every round so far, including round 0
+     */
+    @NotNull
+    public List<Round> getRounds()
+    {
+        return Collections.unmodifiableList(rounds);
+    }
+
+    /**
+     * @return the sum of all rounds, the number of the returned round is the number of rounds
+     */
+    @NotNull
+    public Round getTotal()
+    {
+        var total = new Round(rounds.size() - 1);
+        for (var round : rounds)
+        {
+            total.rootElements += round.rootElements;
+            total.processingNanos += round.processingNanos;
+            total.writeNanos += round.writeNanos;
+            total.files += round.files;
+            total.bytes += round.bytes;
+            total.verifications.add(round.getVerifications());
+            total.failedVerifications.add(round.getFailedVerifications());
+        }
+        return total;
+    }
+
+    /**
+     * @param processor the name of the processor
+     * @return a human-readable table of all rounds and the total
+     */
+    @NotNull
+    public String toText(@NotNull String processor)
+    {
+        var text = new StringBuilder();
+        text.append("Profile of ").append(processor).append('\n');
+        var header = "%-7s %13s %15s %12s %7s %12s %13s %8s%n";
+        text.append(String.format(Locale.ROOT, header, "round", "root elements", "processing ms", "writing ms",
+            "files", "bytes", "verifications", "failed"));
+        for (var round : rounds)
+            appendRow(text, String.valueOf(round.getNumber()), round);
+        appendRow(text, "total", getTotal());
+        return text.toString();
+    }
+
+    private static void appendRow(StringBuilder text, String name, Round round)
+    {
+        text.append(String.format(Locale.ROOT, "%-7s %13d %15.3f %12.3f %7d %12d %13d %8d%n", name,
+            round.getRootElements(), millis(round.getProcessingNanos()), millis(round.getWriteNanos()),
+            round.getFiles(), round.getBytes(), round.getVerifications(), round.getFailedVerifications()));
+    }
+
+    /**
+     * @param processor the name of the processor
+     * @return a JSON object with the processor name, all rounds and the total
+     */
+    @NotNull
+    public String toJson(@NotNull String processor)
+    {
+        var json = new StringBuilder();
+        json.append("{\"processor\":\"").append(processor).append("\",\"rounds\":[");
+        for (int i = 0; i < rounds.size(); i++)
+        {
+            if (i > 0)
+                json.append(',');
+            appendJson(json, rounds.get(i));
+        }
+        json.append("],\"total\":");
+        appendJson(json, getTotal());
+        return json.append("}\n").toString();
+    }
+
+    private static void appendJson(StringBuilder json, Round round)
+    {
+        json.append(String.format(Locale.ROOT, "{\"round\":%d,\"rootElements\":%d,\"processingMillis\":%.3f,"
+                + "\"writingMillis\":%.3f,\"files\":%d,\"bytes\":%d,\"verifications\":%d,\"failedVerifications\":%d}",
+            round.getNumber(), round.getRootElements(), millis(round.getProcessingNanos()), millis(round.getWriteNanos()),
+            round.getFiles(), round.getBytes(), round.getVerifications(), round.getFailedVerifications()));
+    }
+
+    private static double millis(long nanos)
+    {
+        return nanos / 1_000_000d;
+    }
+
+    /**
+     * The metrics of one round
+     */
+    public static final class Round
+    {
+        private final int number;
+        private int rootElements;
+        private long processingNanos;
+        private long writeNanos;
+        private long files;
+        private long bytes;
+        private final LongAdder verifications = new LongAdder();
+        private final LongAdder failedVerifications = new LongAdder();
+
+        private Round(int number)
+        {
+            this.number = number;
+        }
+
+        public int getNumber()
+        {
+            return number;
+        }
+
+        public int getRootElements()
+        {
+            return rootElements;
+        }
+
+        /**
+         * @return the wall time spent in {@link BaseProcessor#performProcessing(java.util.Set, javax.annotation.processing.RoundEnvironment)}
+         */
+        public long getProcessingNanos()
+        {
+            return processingNanos;
+        }
+
+        /**
+         * @return the wall time spent rendering and writing generated classes
+         */
+        public long getWriteNanos()
+        {
+            return writeNanos;
+        }
+
+        public long getFiles()
+        {
+            return files;
+        }
+
+        /**
+         * @return the size of the generated sources in UTF-8
+         */
+        public long getBytes()
+        {
+            return bytes;
+        }
+
+        public long getVerifications()
+        {
+            return verifications.sum();
+        }
+
+        public long getFailedVerifications()
+        {
+            return failedVerifications.sum();
+        }
+    }
+}
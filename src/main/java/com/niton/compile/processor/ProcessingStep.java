@@ -0,0 +1,45 @@
+package com.niton.compile.processor;
+
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A part of a {@link BaseProcessor} that handles elements annotated with a fixed set of annotations.
+ * <p>
+ * Return the steps of a processor from {@link BaseProcessor#getSteps()}. The processor only calls a step in rounds that
+ * contain at least one element annotated with one of its annotations, rounds without any of them do not reach the steps.
+ * The annotations of all steps are added to {@link BaseProcessor#getSupportedAnnotationTypes()}.
+ * </p>
+ * <p>
+ * An element that can not be processed yet, usually because it refers to a type that is generated in this round
+ * (see {@link com.niton.compile.ProcessingUtils#refersToErrorTypes(Element)}), is returned from
+ * {@link #process(Map, RoundEnvironment)}. The processor looks it up again in the next round and passes it to the step
+ * again, together with the other elements of its type that have one of the annotations of the step. Elements that are
+ * still not ready when processing is over are reported as errors, like elements of local and anonymous classes which
+ * can not be looked up again.
+ * </p>
+ */
+public interface ProcessingStep
+{
+    /**
+     * @return the qualified names of the annotation types this step handles, for example {@code com.example.Mapper}
+     */
+    @NotNull
+    Set<String> getAnnotations();
+
+    /**
+     * Processes the elements of a round
+     *
+     * @param elementsByAnnotation the annotated elements of the round by qualified annotation name, in the order of
+     *                             {@link #getAnnotations()}. Annotations without elements in the round are left out.
+     * @param roundEnv             the current round
+     * @return the elements that are not ready to be processed yet and should be passed to this step in the next round
+     */
+    @NotNull
+    Set<? extends Element> process(@NotNull Map<String, Set<Element>> elementsByAnnotation, @NotNull RoundEnvironment roundEnv);
+}
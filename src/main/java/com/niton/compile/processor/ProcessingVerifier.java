@@ -1,8 +1,9 @@
 package com.niton.compile.processor;
 
-import static java.lang.String.format;
-
 import java.lang.annotation.Annotation;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
@@ -10,21 +11,92 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
 
+import com.niton.compile.verify.MessageTemplate;
 import com.niton.compile.verify.ProcessingVerification;
+import com.niton.compile.verify.VerificationListener;
 import com.niton.compile.verify.Verifiable;
 
 /**
  * utility class for verifying elements (methods, annotations, fields, etc.)
+ * <p>
+ * Messages are created lazily, checks that pass never format a message or call {@link Element#toString()}.
+ * Each check uses one {@link MessageTemplate} for all verifications it creates.
+ * </p>
  */
 public class ProcessingVerifier
 {
+    private static final MessageTemplate IS_CLASS = MessageTemplate.of("%s should [not ]be a class");
+    private static final MessageTemplate EXTENDS = MessageTemplate.of("%s should [not ]extend %s");
+    private static final MessageTemplate IS_INTERFACE = MessageTemplate.of("%s should [not ]be an interface");
+    private static final MessageTemplate IS_ANNOTATION = MessageTemplate.of("%s should [not ]be an annotation");
+    private static final MessageTemplate IS_ENUM = MessageTemplate.of("%s should [not ]be an enum");
+    private static final MessageTemplate IS_FIELD = MessageTemplate.of("%s should [not ]be a field");
+    private static final MessageTemplate IS_ANNOTATED_WITH = MessageTemplate.of("%s should [not ]be annotated with @%s");
+    private static final MessageTemplate IMPLEMENTS = MessageTemplate.of("%s should [not ]implement %s");
+    private static final MessageTemplate IS_A = MessageTemplate.of("%s should [not ]be a %s");
+    private static final Map<ElementKind, String> KIND_NAMES = new EnumMap<>(ElementKind.class);
+
+    static
+    {
+        for (var kind : ElementKind.values())
+            KIND_NAMES.put(kind, kind.name().toLowerCase(Locale.ROOT));
+    }
+
     private final ProcessingEnvironment env;
     private final ProcessingLogger log;
+    private final SymbolCache symbols;
+    private final HierarchyOracle hierarchy;
+    private final VerificationListener listener;
 
+    /**
+     * Creates a verifier that looks up types and checks hierarchies again for every check
+     * ({@link SymbolCache#uncached(ProcessingEnvironment)}, {@link HierarchyOracle#uncached(ProcessingEnvironment)}).
+     * Pass caches that are invalidated after every round to the other constructors to remember the answers.
+     */
     public ProcessingVerifier(ProcessingEnvironment env, ProcessingLogger log)
+    {
+        this(env, log, SymbolCache.uncached(env), HierarchyOracle.uncached(env));
+    }
+
+    /**
+     * @param symbols   the cache to look up types by name with
+     * @param hierarchy answers the subtype and assignability checks
+     */
+    public ProcessingVerifier(ProcessingEnvironment env, ProcessingLogger log, SymbolCache symbols,
+        HierarchyOracle hierarchy)
+    {
+        this(env, log, symbols, hierarchy, null);
+    }
+
+    /**
+     * @param symbols   the cache to look up types by name with
+     * @param hierarchy answers the subtype and assignability checks
+     * @param listener  observes all verifications created by this verifier, may be null
+     */
+    public ProcessingVerifier(ProcessingEnvironment env, ProcessingLogger log, SymbolCache symbols,
+        HierarchyOracle hierarchy, VerificationListener listener)
     {
         this.env = env;
         this.log = log;
+        this.symbols = symbols;
+        this.hierarchy = hierarchy;
+        this.listener = listener;
+    }
+
+    /**
+     * @return the cache used to look up types by name
+     */
+    public SymbolCache getSymbols()
+    {
+        return symbols;
+    }
+
+    /**
+     * @return the oracle answering the hierarchy checks
+     */
+    public HierarchyOracle getHierarchy()
+    {
+        return hierarchy;
     }
 
     /**
@@ -35,12 +107,12 @@ public class ProcessingVerifier
      */
     public ProcessingVerification isClass(Element elem)
     {
-        return new ProcessingVerification(
+        return observed(new ProcessingVerification(
             log,
             e -> e.getKind() == ElementKind.CLASS,
-            format("%s should [not ]be a class", elem),
-            elem
-        );
+            IS_CLASS,
+            elem, elem
+        ));
     }
 
     /**
@@ -52,7 +124,7 @@ public class ProcessingVerifier
      */
     public ProcessingVerification doesExtend(Element element, Class<?> superClass)
     {
-        return doesExtend(element, superClass.getName());
+        return doesExtend(element, symbols.getType(superClass));
     }
 
     /**
@@ -64,12 +136,12 @@ public class ProcessingVerifier
      */
     public ProcessingVerification doesExtend(Element element, TypeMirror superClass)
     {
-        return new ProcessingVerification(
+        return observed(new ProcessingVerification(
                 log,
                 e -> doesElementExtendClass(e, superClass),
-                format("%s should [not ]extend %s", element, superClass),
-                element
-        );
+                EXTENDS,
+                element, element, superClass
+        ));
     }
 
     /**
@@ -81,7 +153,7 @@ public class ProcessingVerifier
      */
     public ProcessingVerification doesExtend(Element element, String superClass)
     {
-        return doesExtend(element, env.getElementUtils().getTypeElement(superClass).asType());
+        return doesExtend(element, symbols.getType(superClass));
     }
 
     /**
@@ -91,12 +163,12 @@ public class ProcessingVerifier
      */
     public ProcessingVerification isInterface(Element elem)
     {
-        return new ProcessingVerification(
+        return observed(new ProcessingVerification(
             log,
             e -> e.getKind() == ElementKind.INTERFACE,
-            format("%s should [not ]be an interface", elem),
-            elem
-        );
+            IS_INTERFACE,
+            elem, elem
+        ));
     }
 
     /**
@@ -105,12 +177,12 @@ public class ProcessingVerifier
      * @return the verification, can be used to fail or warn.
      */
     public ProcessingVerification isAnnotation(Element elem){
-        return new ProcessingVerification(
+        return observed(new ProcessingVerification(
             log,
             e -> e.getKind() == ElementKind.ANNOTATION_TYPE,
-            format("%s should [not ]be an annotation", elem),
-            elem
-        );
+            IS_ANNOTATION,
+            elem, elem
+        ));
     }
 
     /**
@@ -119,12 +191,12 @@ public class ProcessingVerifier
      * @return the verification, can be used to fail or warn.
      */
     public ProcessingVerification isEnum(Element elem){
-        return new ProcessingVerification(
+        return observed(new ProcessingVerification(
             log,
             e -> e.getKind() == ElementKind.ENUM,
-            format("%s should [not ]be an enum", elem),
-            elem
-        );
+            IS_ENUM,
+            elem, elem
+        ));
     }
 
     /**
@@ -133,12 +205,12 @@ public class ProcessingVerifier
      * @return the verification, can be used to fail or warn.
      */
     public ProcessingVerification isField(Element elem){
-        return new ProcessingVerification(
+        return observed(new ProcessingVerification(
             log,
             e -> e.getKind() == ElementKind.FIELD,
-            format("%s should [not ]be a field", elem),
-            elem
-        );
+            IS_FIELD,
+            elem, elem
+        ));
     }
 
     /**
@@ -148,12 +220,12 @@ public class ProcessingVerifier
      * @return the verification, can be used to fail or warn.
      */
     public ProcessingVerification isAnnotatedWith(Element elem, Class<? extends Annotation> annotation){
-        return new ProcessingVerification(
+        return observed(new ProcessingVerification(
             log,
             e -> e.getAnnotation(annotation) != null,
-            format("%s should [not ]be annotated with @%s", elem, annotation.getSimpleName()),
-            elem
-        );
+            IS_ANNOTATED_WITH,
+            elem, elem, annotation.getSimpleName()
+        ));
     }
 
     /**
@@ -164,35 +236,39 @@ public class ProcessingVerifier
      */
     public ProcessingVerification doesImplement(Element element, Class<?> iFace)
     {
-        return new ProcessingVerification(
+        return observed(new ProcessingVerification(
             log,
             e -> doesElementImplementClass(e, iFace),
-            format("%s should [not ]implement %s", element, iFace),
-            element
-        );
+            IMPLEMENTS,
+            element, element, iFace
+        ));
+    }
+
+    private ProcessingVerification observed(ProcessingVerification verification)
+    {
+        return listener == null ? verification : verification.observedBy(listener);
     }
 
     private boolean doesElementImplementClass(Element element, Class<?> iFace)
     {
-        if (!(element instanceof TypeElement))
+        if (!(element instanceof TypeElement type))
             return false;
-        var iFaceType = env.getElementUtils().getTypeElement(iFace.getName()).asType();
-        return env.getTypeUtils().isAssignable(element.asType(), iFaceType);
+        return hierarchy.isAssignable(type, symbols.getType(iFace));
     }
 
     private boolean doesElementExtendClass(Element element, TypeMirror superType)
     {
-        if (!(element instanceof TypeElement))
+        if (!(element instanceof TypeElement type))
             return false;
-        return env.getTypeUtils().isSubtype(element.asType(), superType);
+        return hierarchy.isSubtype(type, superType);
     }
 
     public Verifiable isA(Element element, ElementKind elementKind) {
-        return new ProcessingVerification(
+        return observed(new ProcessingVerification(
                 log,
                 e -> e.getKind() == elementKind,
-                format("%s should [not ]be a %s", element, elementKind.name().toLowerCase()),
-                element
-        );
+                IS_A,
+                element, element, KIND_NAMES.get(elementKind)
+        ));
     }
 }
@@ -0,0 +1,94 @@
+package com.niton.compile.processor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * JDK Flight Recorder events of annotation processing, in the category <i>Annotation Processing</i>:
+ * <ul>
+ *     <li>{@code niton.proto.Round}: a round of a {@link BaseProcessor}, including all its interceptors</li>
+ *     <li>{@code niton.proto.GeneratedSource}: writing a generated type through the {@link javax.annotation.processing.Filer}</li>
+ *     <li>{@code niton.proto.Verification}: evaluation of a {@link com.niton.compile.verify.ProcessingVerification}</li>
+ * </ul>
+ * Events are only created while a recording is running, otherwise emitting them costs one volatile read.
+ */
+public final class ProcessorEvents
+{
+    static final String CATEGORY = "Annotation Processing";
+
+    private static volatile boolean recording;
+
+    static
+    {
+        FlightRecorder.addListener(new FlightRecorderListener()
+        {
+            @Override
+            public void recorderInitialized(FlightRecorder recorder)
+            {
+                update(recorder);
+            }
+
+            @Override
+            public void recordingStateChanged(Recording changed)
+            {
+                update(FlightRecorder.getFlightRecorder());
+            }
+        });
+    }
+
+    private ProcessorEvents()
+    {
+    }
+
+    private static void update(FlightRecorder recorder)
+    {
+        recording = recorder.getRecordings().stream().anyMatch(r -> r.getState() == RecordingState.RUNNING);
+    }
+
+    /**
+     * @return true if a flight recording is running, events should only be created if this is true
+     */
+    public static boolean isRecording()
+    {
+        return recording;
+    }
+
+    @Name("niton.proto.Round")
+    @Label("Processor Round")
+    @Category(CATEGORY)
+    @Description("A round of an annotation processor including its interceptors")
+    static final class RoundEvent extends Event
+    {
+        @Label("Processor")
+        String processor;
+        @Label("Round")
+        int round;
+        @Label("Annotations")
+        int annotations;
+        @Label("Root Elements")
+        int rootElements;
+        @Label("Last Round")
+        boolean processingOver;
+    }
+
+    @Name("niton.proto.GeneratedSource")
+    @Label("Generated Source")
+    @Category(CATEGORY)
+    @Description("Writing a generated type through the filer")
+    static final class GeneratedSourceEvent extends Event
+    {
+        @Label("Type")
+        String type;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+}
@@ -0,0 +1,335 @@
+package com.niton.compile.processor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs many {@link BaseProcessor}s (modules) under a single javac registration.
+ * <p>
+ * Modules are loaded with {@link ServiceLoader} as services of {@link BaseProcessor}
+ * ({@code META-INF/services/com.niton.compile.processor.BaseProcessor}). Register the host instead of the modules in
+ * {@code META-INF/services/javax.annotation.processing.Processor}, a module registered in both runs twice.
+ * </p>
+ * <p>
+ * In every round the modules run in the order of their {@link BaseProcessor#getDependencies() dependencies}, otherwise in
+ * the order they were loaded. Like javac, the host calls a module once a round has annotations it supports and in every
+ * later round, and only with the annotations it supports. Every module is called in the last round, so modules that
+ * never got an annotation still finish their processing. Annotations claimed by a module are not passed to the modules
+ * after it, the host itself never claims annotations.
+ * </p>
+ * <p>
+ * The modules share one {@link SymbolCache} and {@link HierarchyOracle}, invalidated when all of them processed a round,
+ * one {@link IndexedRoundEnvironment} per round and one {@link LastRoundInterceptor} if any module
+ * {@link BaseProcessor#applyJavacBugWorkaround() applies the javac bug workaround}.
+ * </p>
+ * <p>
+ * Register the host as {@code dynamic} in {@code META-INF/gradle/incremental.annotation.processors}, it reports the
+ * weakest {@link #getIncrementalMode() incremental mode} of its modules to Gradle.
+ * </p>
+ */
+public class ProcessorHost extends AbstractProcessor
+{
+    private final List<BaseProcessor> loaded;
+    private final List<BaseProcessor> modules = new ArrayList<>();
+    private final Map<BaseProcessor, SupportedAnnotations> supported = new IdentityHashMap<>();
+    private final Set<BaseProcessor> called = Collections.newSetFromMap(new IdentityHashMap<>());
+    private ProcessingLogger logger;
+    private SymbolCache symbols;
+    private HierarchyOracle hierarchy;
+    private Processable endpoint;
+
+    /**
+     * Loads the modules from the class path (or module path) of this class
+     */
+    public ProcessorHost()
+    {
+        this(ServiceLoader.load(BaseProcessor.class, ProcessorHost.class.getClassLoader())
+            .stream()
+            .map(ServiceLoader.Provider::get)
+            .toList());
+    }
+
+    /**
+     * @param modules the processors to run
+     */
+    protected ProcessorHost(@NotNull List<? extends BaseProcessor> modules)
+    {
+        this.loaded = List.copyOf(modules);
+    }
+
+    @Override
+    public synchronized void init(@NotNull ProcessingEnvironment processingEnv)
+    {
+        super.init(processingEnv);
+        logger = BaseProcessor.createLogger(processingEnv, getClass().getName());
+        symbols = new SymbolCache(processingEnv);
+        hierarchy = new HierarchyOracle(processingEnv);
+        modules.addAll(sortByDependencies(loaded));
+        for (var module : modules)
+        {
+            module.hostedBy(this);
+            module.init(processingEnv);
+            supported.put(module, new SupportedAnnotations(module.getSupportedAnnotationTypes()));
+        }
+        endpoint = this::dispatch;
+        if (modules.stream().anyMatch(BaseProcessor::applyJavacBugWorkaround) && isJavacBugPresent(processingEnv))
+            endpoint = new LastRoundInterceptor(processingEnv, logger, null, getClass().getName(), getIncrementalMode()).processable(endpoint);
+        logger.info("[%s] Hosting %s", getClass().getSimpleName(),
+            modules.stream().map(m -> m.getClass().getSimpleName()).toList());
+    }
+
+    private boolean isJavacBugPresent(ProcessingEnvironment processingEnv)
+    {
+        try
+        {
+            return LastRoundInterceptor.isBugPresent(processingEnv);
+        }
+        catch (IllegalArgumentException e)
+        {
+            logger.fail(e);
+            return true;
+        }
+    }
+
+    @NotNull
+    private List<BaseProcessor> sortByDependencies(List<BaseProcessor> processors)
+    {
+        var byType = new LinkedHashMap<Class<?>, BaseProcessor>();
+        for (var processor : processors)
+            byType.put(processor.getClass(), processor);
+        var sorted = new ArrayList<BaseProcessor>(processors.size());
+        var visiting = new HashSet<Class<?>>();
+        var done = new HashSet<Class<?>>();
+        for (var processor : processors)
+            visit(processor, byType, visiting, done, sorted);
+        return sorted;
+    }
+
+    private void visit(BaseProcessor processor, Map<Class<?>, BaseProcessor> byType, Set<Class<?>> visiting,
+        Set<Class<?>> done, List<BaseProcessor> sorted)
+    {
+        var type = processor.getClass();
+        if (done.contains(type))
+            return;
+        if (!visiting.add(type))
+        {
+            logger.fail("[%s] Processors depend on each other in a cycle: %s", getClass().getSimpleName(),
+                visiting.stream().map(Class::getSimpleName).toList());
+            return;
+        }
+        for (var dependency : processor.getDependencies())
+        {
+            var dependencyProcessor = byType.get(dependency);
+            if (dependencyProcessor == null)
+                logger.log(LogLevel.WARN, "[%s] %s depends on %s which is not hosted", getClass().getSimpleName(),
+                    type.getSimpleName(), dependency.getName());
+            else
+                visit(dependencyProcessor, byType, visiting, done, sorted);
+        }
+        visiting.remove(type);
+        if (done.add(type))
+            sorted.add(processor);
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        var exporter = logger.getExporter();
+        if (exporter != null)
+            exporter.startRound();
+        try
+        {
+            return endpoint.process(annotations, IndexedRoundEnvironment.of(processingEnv, roundEnv));
+        }
+        finally
+        {
+            symbols.invalidate();
+            hierarchy.invalidate();
+            logger.flush();
+        }
+    }
+
+    private boolean dispatch(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        var unclaimed = new LinkedHashSet<TypeElement>(annotations == null ? Set.of() : annotations);
+        try
+        {
+            for (var module : modules)
+            {
+                var moduleAnnotations = supported.get(module).filter(unclaimed);
+                //every module has to see the last round to save and release what it opened in init
+                if (moduleAnnotations.isEmpty() && !called.contains(module) && !supported.get(module).all()
+                    && !roundEnv.processingOver())
+                    continue;
+                called.add(module);
+                if (module.process(Collections.unmodifiableSet(moduleAnnotations), roundEnv))
+                    unclaimed.removeAll(moduleAnnotations);
+            }
+        }
+        finally
+        {
+            if (roundEnv.processingOver())
+                closeExporter();
+        }
+        return false;
+    }
+
+    private void closeExporter()
+    {
+        var exporter = logger.getExporter();
+        if (exporter == null)
+            return;
+        logger.flush();
+        try
+        {
+            exporter.close();
+        }
+        catch (IOException e)
+        {
+            logger.log(LogLevel.WARN, "Could not export diagnostics: %s", e.getMessage());
+        }
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes()
+    {
+        var types = new LinkedHashSet<String>();
+        for (var module : modules.isEmpty() ? loaded : modules)
+            types.addAll(module.getSupportedAnnotationTypes());
+        return Collections.unmodifiableSet(types);
+    }
+
+    @Override
+    public Set<String> getSupportedOptions()
+    {
+        var options = new HashSet<>(ProcessorOptions.all());
+        for (var module : loaded)
+            options.addAll(module.getSupportedOptions());
+        //the category of each module is replaced by the one of the whole host
+        for (var mode : IncrementalMode.values())
+            options.remove(mode.getGradleOption());
+        var gradleOption = getIncrementalMode().getGradleOption();
+        if (gradleOption != null)
+            options.add(gradleOption);
+        return Collections.unmodifiableSet(options);
+    }
+
+    /**
+     * @return the weakest incremental mode of all modules: {@link IncrementalMode#NONE} if any module is not
+     * incremental, {@link IncrementalMode#AGGREGATING} if any module aggregates, {@link IncrementalMode#ISOLATING} only
+     * if all modules are isolating
+     */
+    @NotNull
+    public IncrementalMode getIncrementalMode()
+    {
+        if (loaded.isEmpty())
+            return IncrementalMode.NONE;
+        var mode = IncrementalMode.ISOLATING;
+        for (var module : loaded)
+        {
+            var moduleMode = module.getIncrementalMode();
+            if (moduleMode == IncrementalMode.NONE)
+                return IncrementalMode.NONE;
+            if (moduleMode == IncrementalMode.AGGREGATING)
+                mode = IncrementalMode.AGGREGATING;
+        }
+        return mode;
+    }
+
+    /**
+     * @return the latest source version supported by any module
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return loaded.stream()
+            .map(BaseProcessor::getSupportedSourceVersion)
+            .max(SourceVersion::compareTo)
+            .orElse(SourceVersion.latestSupported());
+    }
+
+    /**
+     * @return the modules in the order they process a round, empty before {@link #init(ProcessingEnvironment)}
+     */
+    @NotNull
+    public List<BaseProcessor> getModules()
+    {
+        return Collections.unmodifiableList(modules);
+    }
+
+    /**
+     * @return the symbol cache shared by all modules
+     */
+    @NotNull
+    public SymbolCache getSymbols()
+    {
+        return symbols;
+    }
+
+    @NotNull
+    HierarchyOracle getHierarchy()
+    {
+        return hierarchy;
+    }
+
+    /**
+     * The annotation types a module supports: names, {@code com.example.*} prefixes and {@code *}
+     */
+    private static final class SupportedAnnotations
+    {
+        private final Set<String> names = new HashSet<>();
+        private final List<String> prefixes = new ArrayList<>();
+        private boolean all;
+
+        private SupportedAnnotations(Set<String> types)
+        {
+            for (var type : types)
+            {
+                //module prefixes like "my.module/com.example.Mapper" are ignored
+                var name = type.substring(type.indexOf('/') + 1);
+                if (name.equals("*"))
+                    all = true;
+                else if (name.endsWith(".*"))
+                    prefixes.add(name.substring(0, name.length() - 1));
+                else
+                    names.add(name);
+            }
+        }
+
+        private boolean all()
+        {
+            return all;
+        }
+
+        private Set<TypeElement> filter(Set<TypeElement> annotations)
+        {
+            if (all)
+                return new LinkedHashSet<>(annotations);
+            var matching = new LinkedHashSet<TypeElement>();
+            for (var annotation : annotations)
+            {
+                var name = annotation.getQualifiedName().toString();
+                if (names.contains(name) || prefixes.stream().anyMatch(name::startsWith))
+                    matching.add(annotation);
+            }
+            return matching;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.niton.compile.processor;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The processor options ({@code -Akey=value}) understood by every {@link BaseProcessor}.
+ * They are reported by {@link BaseProcessor#getSupportedOptions()} so javac does not warn about them.
+ */
+public final class ProcessorOptions
+{
+    /**
+     * {@code true} to generate byte identical sources for identical inputs. The {@code date} of {@link javax.annotation.processing.Generated}
+     * is left out unless a fixed date is given by {@link #GENERATED_DATE} or the {@code SOURCE_DATE_EPOCH} environment variable.
+     */
+    public static final String REPRODUCIBLE = "proto.reproducible";
+    /**
+     * A fixed date (seconds since epoch) to use for {@link javax.annotation.processing.Generated#date()}.
+     */
+    public static final String GENERATED_DATE = "proto.generated.date";
+    /**
+     * A directory (usually inside the build directory) to persist the {@link SourceManifest} of each processor in
+     */
+    public static final String MANIFEST_DIR = "proto.manifest.dir";
+
+    /**
+     * The lowest {@link LogLevel} the {@link ProcessingLogger} of a processor reports ({@code info}, {@code warn} or {@code error}),
+     * defaults to {@code info}. Errors are always reported.
+     */
+    public static final String LOG_LEVEL = "proto.log.level";
+
+    /**
+     * {@code true} to collect the diagnostics of a round in a {@link DiagnosticBuffer} and report them deduplicated
+     * at the end of the round instead of immediately
+     */
+    public static final String BUFFER_DIAGNOSTICS = "proto.diagnostics.buffer";
+    /**
+     * How many elements the same buffered diagnostic rule (unformatted message) is reported for before it is summarized,
+     * defaults to 20.
+     * {@code 0} reports all of them. Only used with {@link #BUFFER_DIAGNOSTICS}.
+     */
+    public static final String MAX_REPEATS = "proto.diagnostics.max.repeats";
+
+    /**
+     * A file (usually inside the build directory) to stream all diagnostics to as JSON lines, see {@link DiagnosticExporter}
+     */
+    public static final String DIAGNOSTICS_FILE = "proto.diagnostics.file";
+
+    /**
+     * A directory to write a profile of each processor to when processing is over, see {@link ProfilingInterceptor}
+     */
+    public static final String PROFILE_DIR = "proto.profile.dir";
+    /**
+     * The format of the profiles written to {@link #PROFILE_DIR}, {@code text} (default) or {@code json}
+     */
+    public static final String PROFILE_FORMAT = "proto.profile.format";
+
+    /**
+     * The first java release (for example {@code 23}) whose javac fixed
+     * <a href="https://bugs.openjdk.java.net/browse/JDK-8256826">JDK-8256826</a>. The {@link LastRoundInterceptor} is
+     * not applied when compiling with that release or a newer one. By default the workaround is always applied.
+     */
+    public static final String JAVAC_BUG_FIXED_RELEASE = "proto.javac.bug.fixed.release";
+
+    private static final Set<String> ALL = Set.of(REPRODUCIBLE, GENERATED_DATE, MANIFEST_DIR, LOG_LEVEL,
+        BUFFER_DIAGNOSTICS, MAX_REPEATS, DIAGNOSTICS_FILE, PROFILE_DIR, PROFILE_FORMAT, JAVAC_BUG_FIXED_RELEASE);
+
+    private ProcessorOptions()
+    {
+    }
+
+    /**
+     * @return all options defined by this library
+     */
+    @NotNull
+    public static Set<String> all()
+    {
+        return ALL;
+    }
+
+    static boolean getBoolean(@NotNull Map<String, String> options, @NotNull String key, boolean defaultValue)
+    {
+        var value = options.get(key);
+        if (value == null || value.isBlank())
+            return defaultValue;
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    static int getInt(@NotNull Map<String, String> options, @NotNull String key, int defaultValue)
+    {
+        var value = getLong(options, key, defaultValue);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(String.format("Option %s is out of range: %d", key, value));
+        return (int) value;
+    }
+
+    static long getLong(@NotNull Map<String, String> options, @NotNull String key, long defaultValue)
+    {
+        var value = options.get(key);
+        if (value == null || value.isBlank())
+            return defaultValue;
+        try
+        {
+            return Long.parseLong(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException(String.format("Option %s has to be a number but was '%s'", key, value), e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.niton.compile.processor;
+
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.TypeElement;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Measures the rounds of a processor into {@link ProcessingMetrics}: the root elements of each round and the wall time
+ * spent in the rest of the chain.
+ * <p>
+ * With {@link ProcessorOptions#PROFILE_DIR} every {@link BaseProcessor} installs this interceptor in front of
+ * {@link BaseProcessor#performProcessing(Set, RoundEnvironment)} (and the {@link LastRoundInterceptor}) but behind
+ * its own interceptors, records generated files and verifications too and writes a report when processing is over.
+ * </p>
+ */
+public class ProfilingInterceptor extends ProcessorInterceptor
+{
+    private final ProcessingMetrics metrics;
+
+    public ProfilingInterceptor(ProcessingEnvironment processingEnv, ProcessingLogger logger,
+        ProcessingVerifier verifier, @NotNull ProcessingMetrics metrics)
+    {
+        super(processingEnv, logger, verifier);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> set, RoundEnvironment roundEnv, Processable processor)
+    {
+        metrics.startRound(roundEnv == null ? 0 : roundEnv.getRootElements().size());
+        var start = System.nanoTime();
+        try
+        {
+            return processor.process(set, roundEnv);
+        }
+        finally
+        {
+            metrics.addProcessingTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the metrics recorded by this interceptor
+     */
+    @NotNull
+    public ProcessingMetrics getMetrics()
+    {
+        return metrics;
+    }
+}
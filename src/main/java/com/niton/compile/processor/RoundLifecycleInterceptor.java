@@ -0,0 +1,76 @@
+package com.niton.compile.processor;
+
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.TypeElement;
+
+/**
+ * The outermost interceptor of every {@link BaseProcessor}. It notifies the processor when a round is over,
+ * after all other interceptors and the processor itself are done, and when javac finished processing.
+ * Diagnostics logged on other threads are reported at the start and the end of every round, buffered diagnostics
+ * (see {@link DiagnosticBuffer}) at the end. Each round is recorded as a {@link ProcessorEvents.RoundEvent}.
+ * The rest of the chain receives the {@link IndexedRoundEnvironment} of the round, it is kept until the next round
+ * so the processors after this one share it.
+ */
+class RoundLifecycleInterceptor extends ProcessorInterceptor
+{
+    private final BaseProcessor processor;
+    private int round;
+    /**
+     * Keeps the shared index of the current round reachable until the next round, the compilation only references it weakly
+     */
+    private RoundEnvironment indexedRound;
+
+    RoundLifecycleInterceptor(ProcessingEnvironment processingEnv, ProcessingLogger logger,
+        ProcessingVerifier verifier, BaseProcessor processor)
+    {
+        super(processingEnv, logger, verifier);
+        this.processor = processor;
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> set, RoundEnvironment roundEnv, Processable next)
+    {
+        round++;
+        roundEnv = IndexedRoundEnvironment.of(processingEnv, roundEnv);
+        indexedRound = roundEnv;
+        ProcessorEvents.RoundEvent event = null;
+        if (ProcessorEvents.isRecording())
+        {
+            event = new ProcessorEvents.RoundEvent();
+            event.begin();
+        }
+        logger.drain();
+        processor.roundStarted(roundEnv);
+        try
+        {
+            var result = next.process(set, roundEnv);
+            processor.roundFinished(roundEnv);
+            if (roundEnv != null && roundEnv.processingOver())
+                processor.processingFinished();
+            return result;
+        }
+        finally
+        {
+            //buffered diagnostics are reported once per round, even if the processor failed with an exception
+            logger.flush();
+            if (event != null)
+                commit(event, set, roundEnv);
+        }
+    }
+
+    private void commit(ProcessorEvents.RoundEvent event, Set<? extends TypeElement> set, RoundEnvironment roundEnv)
+    {
+        event.end();
+        if (!event.shouldCommit())
+            return;
+        event.processor = processor.getClass().getName();
+        event.round = round;
+        event.annotations = set == null ? 0 : set.size();
+        event.rootElements = roundEnv == null ? 0 : roundEnv.getRootElements().size();
+        event.processingOver = roundEnv != null && roundEnv.processingOver();
+        event.commit();
+    }
+}
@@ -0,0 +1,250 @@
+package com.niton.compile.processor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ModuleElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.QualifiedNameable;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers a fingerprint of every source a processor generated, to tell which sources are unchanged since the last build.
+ * <p>
+ * The manifest is persisted to the directory given by {@link ProcessorOptions#MANIFEST_DIR} (one file per processor)
+ * and loaded again by the next compilation. Without that option fingerprints only live as long as the compilation.
+ * </p>
+ * <p>
+ * Unchanged sources are still handed to the {@link javax.annotation.processing.Filer}, javac only compiles the sources
+ * created through it in the current compilation. The manifest reports how many outputs were reused
+ * ({@link #getHits()}) and how many changed ({@link #getMisses()}).
+ * </p>
+ * <p>
+ * Every fingerprint remembers the sources its originating elements are declared in. A fingerprint that was not
+ * generated again although one of those sources was {@link #compiled(Set) compiled} is outdated and dropped on
+ * {@link #save()}. Fingerprints without originating elements are kept until they are generated again.
+ * </p>
+ */
+public final class SourceManifest
+{
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    @Nullable
+    private final Path file;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new HashMap<>();
+    /**
+     * The sources compiled in this compilation, see {@link #sourceOf(Element)}
+     */
+    private final Set<String> compiled = new HashSet<>();
+    private int hits;
+    private int misses;
+
+    private SourceManifest(@Nullable Path file, Map<String, Entry> previous)
+    {
+        this.file = file;
+        this.previous = previous;
+    }
+
+    /**
+     * @return a manifest that is not persisted
+     */
+    @NotNull
+    public static SourceManifest inMemory()
+    {
+        return new SourceManifest(null, Map.of());
+    }
+
+    /**
+     * Loads the manifest from the given file, a missing file results in an empty manifest
+     *
+     * @param file the file to read from and to {@link #save()} to
+     * @throws IOException if the file exists but can not be read
+     */
+    @NotNull
+    public static SourceManifest load(@NotNull Path file) throws IOException
+    {
+        if (!Files.exists(file))
+            return new SourceManifest(file, Map.of());
+        var previous = new HashMap<String, Entry>();
+        for (var line : Files.readAllLines(file, StandardCharsets.UTF_8))
+        {
+            //<qualified name> <hash>[ <source>,<source>...]
+            var parts = line.split(" ");
+            if (parts.length < 2 || parts.length > 3 || parts[0].isEmpty())
+                continue;
+            try
+            {
+                var hash = Long.parseUnsignedLong(parts[1], 16);
+                previous.put(parts[0], new Entry(hash, parts.length == 2 ? Set.of() : Set.of(parts[2].split(","))));
+            }
+            catch (NumberFormatException e)
+            {
+                //a broken line only costs a cache miss
+            }
+        }
+        return new SourceManifest(file, previous);
+    }
+
+    /**
+     * Records the content of a generated source
+     *
+     * @param qualifiedName the qualified name of the generated type
+     * @param content       the rendered source
+     * @return true if the content is the same as in the previous build
+     */
+    public boolean record(@NotNull String qualifiedName, @NotNull CharSequence content)
+    {
+        return record(qualifiedName, hash(content), Set.of());
+    }
+
+    /**
+     * Records the fingerprint of a generated source
+     *
+     * @param qualifiedName the qualified name of the generated type
+     * @param hash          the {@link #hash(CharSequence)} of the rendered source
+     * @param sources       the sources the originating elements are declared in, see {@link #sourcesOf(Collection)}
+     * @return true if the content is the same as in the previous build
+     */
+    boolean record(@NotNull String qualifiedName, long hash, @NotNull Set<String> sources)
+    {
+        current.put(qualifiedName, new Entry(hash, sources));
+        var before = previous.get(qualifiedName);
+        var unchanged = before != null && before.hash() == hash;
+        if (unchanged)
+            hits++;
+        else
+            misses++;
+        return unchanged;
+    }
+
+    /**
+     * @return the number of recorded sources that are identical to the previous build
+     */
+    public int getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return the number of recorded sources that are new or changed since the previous build
+     */
+    public int getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Marks the sources of the given elements as compiled in this compilation
+     *
+     * @param rootElements the root elements of a round
+     */
+    void compiled(@NotNull Set<? extends Element> rootElements)
+    {
+        for (var element : rootElements)
+        {
+            var source = sourceOf(element);
+            if (source != null)
+                compiled.add(source);
+        }
+    }
+
+    /**
+     * Writes all fingerprints to the file the manifest was loaded from. Entries of the previous build that were not
+     * generated again are kept, since incremental compilations only regenerate a part of the sources, unless one of
+     * their sources was compiled again. Does nothing for an {@link #inMemory()} manifest.
+     *
+     * @throws IOException if the file can not be written
+     */
+    public void save() throws IOException
+    {
+        if (file == null)
+            return;
+        var merged = new TreeMap<String, Entry>();
+        previous.forEach((name, entry) -> {
+            if (entry.sources().stream().noneMatch(compiled::contains))
+                merged.put(name, entry);
+        });
+        merged.putAll(current);
+        var builder = new StringBuilder(merged.size() * 64);
+        merged.forEach((name, entry) -> {
+            builder.append(name).append(' ').append(Long.toHexString(entry.hash()));
+            if (!entry.sources().isEmpty())
+                builder.append(' ').append(String.join(",", new TreeSet<>(entry.sources())));
+            builder.append('\n');
+        });
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        Files.writeString(file, builder, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param elements the originating elements of a generated source
+     * @return the sources the elements are declared in
+     */
+    @NotNull
+    static Set<String> sourcesOf(@NotNull Collection<? extends Element> elements)
+    {
+        var sources = new HashSet<String>(elements.size());
+        for (var element : elements)
+        {
+            var source = sourceOf(element);
+            if (source != null)
+                sources.add(source);
+        }
+        return sources;
+    }
+
+    /**
+     * @return the qualified name of the top level type (or {@code <package>.package-info}) the element is declared
+     * in, null if it is not declared in a source that can be named
+     */
+    @Nullable
+    static String sourceOf(@NotNull Element element)
+    {
+        var topLevel = element;
+        while (topLevel.getEnclosingElement() != null && !(topLevel.getEnclosingElement() instanceof PackageElement)
+            && !(topLevel instanceof PackageElement))
+            topLevel = topLevel.getEnclosingElement();
+        if (topLevel instanceof ModuleElement || !(topLevel instanceof QualifiedNameable nameable)
+            || nameable.getQualifiedName().isEmpty())
+            return null;
+        var name = nameable.getQualifiedName().toString();
+        return topLevel instanceof PackageElement ? name + ".package-info" : name;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 chars, avoids encoding the source to bytes just to hash it
+     */
+    static long hash(@NotNull CharSequence content)
+    {
+        var hash = FNV_OFFSET;
+        for (int i = 0; i < content.length(); i++)
+        {
+            var c = content.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * @param sources the sources the originating elements of the generated source are declared in
+     */
+    private record Entry(long hash, Set<String> sources)
+    {
+    }
+}
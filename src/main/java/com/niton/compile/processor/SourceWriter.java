@@ -0,0 +1,281 @@
+package com.niton.compile.processor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.palantir.javapoet.JavaFile;
+import com.palantir.javapoet.TypeSpec;
+
+/**
+ * Renders generated types and writes them through the {@link javax.annotation.processing.Filer}.
+ * Every written source is fingerprinted in the {@link SourceManifest}.
+ * <p>
+ * Rendering a {@link TypeSpec} does not touch the javac model, so batches are rendered on the render executor.
+ * The filer is not thread safe, the rendered sources are committed in submission order on the calling (processor) thread.
+ * </p>
+ * <p>
+ * Sources can also be {@link #enqueue(Source) queued} and written at once at the end of the round, in that case
+ * duplicates are coalesced and types that were already written are skipped instead of causing a
+ * {@link javax.annotation.processing.FilerException}.
+ * </p>
+ */
+final class SourceWriter
+{
+    private final ProcessingEnvironment processingEnv;
+    private final SourceManifest manifest;
+    private final ProcessingLogger logger;
+    private final Executor renderExecutor;
+    @Nullable
+    private final ProcessingMetrics metrics;
+    private final IncrementalMode incrementalMode;
+    /**
+     * The queued sources by qualified name, in order of first submission
+     */
+    private final Map<String, Source> queue = new LinkedHashMap<>();
+    /**
+     * Qualified names of all sources written in this compilation
+     */
+    private final Set<String> written = new HashSet<>();
+
+    /**
+     * @param metrics         records the time spent writing and the written files, null to not record anything
+     * @param incrementalMode the mode of the processor, queued sources of an {@link IncrementalMode#ISOLATING} processor
+     *                        are not merged into sources with more than one originating element
+     */
+    SourceWriter(@NotNull ProcessingEnvironment processingEnv, @NotNull SourceManifest manifest,
+        @NotNull ProcessingLogger logger, @NotNull Executor renderExecutor, @Nullable ProcessingMetrics metrics,
+        @NotNull IncrementalMode incrementalMode)
+    {
+        this.processingEnv = processingEnv;
+        this.manifest = manifest;
+        this.logger = logger;
+        this.renderExecutor = renderExecutor;
+        this.metrics = metrics;
+        this.incrementalMode = incrementalMode;
+    }
+
+    /**
+     * Renders and writes the type, originating elements are taken from the {@link TypeSpec}
+     *
+     * @param pack the package to write the type to
+     * @param cls  the type to write
+     * @throws IOException if the source can not be written
+     */
+    void write(@NotNull String pack, @NotNull TypeSpec cls) throws IOException
+    {
+        var start = System.nanoTime();
+        try
+        {
+            commit(render(new Source(pack, cls)));
+        }
+        finally
+        {
+            if (metrics != null)
+                metrics.addWriteTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Renders all sources in parallel and writes them in the given order. Failures are reported to the logger
+     * and do not stop the other sources from being written.
+     *
+     * @param sources the sources to write
+     * @return the sources that were written successfully
+     */
+    @NotNull
+    List<Source> writeAll(@NotNull List<Source> sources)
+    {
+        var committed = new ArrayList<Source>(sources.size());
+        if (sources.size() == 1)
+        {
+            var source = sources.get(0);
+            try
+            {
+                write(source.pack(), source.type());
+                committed.add(source);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                logger.fail(e, true);
+            }
+            return committed;
+        }
+        var start = System.nanoTime();
+        var rendering = new ArrayList<CompletableFuture<Rendered>>(sources.size());
+        for (var source : sources)
+            rendering.add(CompletableFuture.supplyAsync(() -> render(source), renderExecutor));
+        for (var future : rendering)
+        {
+            try
+            {
+                var rendered = future.join();
+                commit(rendered);
+                committed.add(rendered.source());
+            }
+            catch (CompletionException e)
+            {
+                logger.fail(e.getCause() instanceof Exception cause ? cause : e, true);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                logger.fail(e, true);
+            }
+        }
+        if (metrics != null)
+            metrics.addWriteTime(System.nanoTime() - start);
+        return committed;
+    }
+
+    /**
+     * Queues a source to be written with the next {@link #drainQueue()}.
+     * A source with the same qualified name as an already queued one is merged into the queued one:
+     * the originating elements are combined and the content of the first submission is kept. The originating elements
+     * of an {@link IncrementalMode#ISOLATING} processor are not combined, it has to generate each type from exactly
+     * one element.
+     *
+     * @param source the source to queue
+     */
+    void enqueue(@NotNull Source source)
+    {
+        var qualifiedName = source.qualifiedName();
+        if (written.contains(qualifiedName))
+        {
+            logger.log(LogLevel.WARN, "%s was already written in this compilation, skipping", qualifiedName);
+            return;
+        }
+        var queued = queue.get(qualifiedName);
+        if (queued == null)
+        {
+            queue.put(qualifiedName, source);
+            return;
+        }
+        if (!queued.type().equals(source.type()))
+            logger.log(LogLevel.WARN, "%s was generated twice with different content in this round, keeping the first one", qualifiedName);
+        var added = new ArrayList<Element>();
+        for (var element : source.type().originatingElements())
+        {
+            if (!queued.type().originatingElements().contains(element) && !added.contains(element))
+                added.add(element);
+        }
+        if (added.isEmpty())
+            return;
+        if (incrementalMode == IncrementalMode.ISOLATING)
+        {
+            logger.log(LogLevel.WARN, "%s was generated from more than one element, an isolating processor has to "
+                + "generate each type from exactly one. Keeping the originating elements of the first one", qualifiedName);
+            return;
+        }
+        var merged = queued.type().toBuilder();
+        added.forEach(merged::addOriginatingElement);
+        queue.put(qualifiedName, new Source(source.pack(), merged.build()));
+    }
+
+    /**
+     * @return all queued sources in submission order, the queue is empty afterwards
+     */
+    @NotNull
+    List<Source> drainQueue()
+    {
+        var sources = new ArrayList<>(queue.values());
+        queue.clear();
+        return sources;
+    }
+
+    @NotNull
+    private static Rendered render(@NotNull Source source)
+    {
+        var content = JavaFile.builder(source.pack(), source.type()).build().toString();
+        return new Rendered(source, content, SourceManifest.hash(content));
+    }
+
+    private void commit(@NotNull Rendered rendered) throws IOException
+    {
+        ProcessorEvents.GeneratedSourceEvent event = null;
+        if (ProcessorEvents.isRecording())
+        {
+            event = new ProcessorEvents.GeneratedSourceEvent();
+            event.begin();
+        }
+        var qualifiedName = rendered.source().qualifiedName();
+        var originatingElements = rendered.source().type().originatingElements();
+        var file = processingEnv.getFiler().createSourceFile(qualifiedName, originatingElements.toArray(new Element[0]));
+        try (var writer = file.openWriter())
+        {
+            //one write of the fully rendered source instead of the many small appends of JavaFile.writeTo(Filer)
+            writer.write(rendered.content());
+        }
+        catch (IOException | RuntimeException e)
+        {
+            file.delete();
+            throw e;
+        }
+        //only sources that made it to the filer count, a failed write must not be fingerprinted as the current state
+        written.add(qualifiedName);
+        manifest.record(qualifiedName, rendered.hash(), SourceManifest.sourcesOf(originatingElements));
+        if (metrics != null)
+            metrics.addFile(utf8Length(rendered.content()));
+        if (event != null && event.shouldCommit())
+        {
+            event.type = qualifiedName;
+            event.bytes = utf8Length(rendered.content());
+            event.commit();
+        }
+    }
+
+    private static long utf8Length(@NotNull String content)
+    {
+        long length = 0;
+        for (int i = 0; i < content.length(); i++)
+        {
+            var c = content.charAt(i);
+            if (c < 0x80)
+                length++;
+            else if (c < 0x800)
+                length += 2;
+            else if (Character.isHighSurrogate(c))
+            {
+                length += 4;
+                i++;
+            }
+            else
+                length += 3;
+        }
+        return length;
+    }
+
+    @NotNull
+    SourceManifest getManifest()
+    {
+        return manifest;
+    }
+
+    /**
+     * A type to generate into a package
+     */
+    record Source(@NotNull String pack, @NotNull TypeSpec type)
+    {
+        @NotNull
+        String qualifiedName()
+        {
+            return pack.isEmpty() ? type.name() : pack + "." + type.name();
+        }
+    }
+
+    private record Rendered(Source source, String content, long hash)
+    {
+    }
+}
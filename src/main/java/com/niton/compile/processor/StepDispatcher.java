@@ -0,0 +1,182 @@
+package com.niton.compile.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Dispatches the rounds of a {@link BaseProcessor} to its {@link ProcessingStep}s.
+ * <p>
+ * Elements a step returns as not ready are kept as {@link ElementHandle}s. In the next round they are looked up again
+ * and the elements in them annotated with the annotations of the step are passed to it together with the elements of
+ * the round. Elements still deferred when processing is over are reported as errors.
+ * </p>
+ * <p>
+ * Every step has an {@link ElementLedger} of the elements it processed, they are never passed to it again (for example
+ * the other members of a type that was deferred because of one member).
+ * </p>
+ */
+final class StepDispatcher
+{
+    private final List<ProcessingStep> steps;
+    private final Elements elements;
+    private final ProcessingLogger logger;
+    private final Map<ProcessingStep, Set<ElementHandle>> deferred = new IdentityHashMap<>();
+    private final Map<ProcessingStep, ElementLedger> ledgers = new IdentityHashMap<>();
+
+    StepDispatcher(@NotNull List<ProcessingStep> steps, Elements elements, @NotNull ProcessingLogger logger)
+    {
+        this.steps = steps;
+        this.elements = elements;
+        this.logger = logger;
+    }
+
+    /**
+     * @param annotations the annotations present in the round
+     * @param roundEnv    the current round
+     */
+    void process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        //the annotations present in the round are known without scanning, rounds without any of them end here
+        if ((annotations == null || annotations.isEmpty()) && deferred.isEmpty())
+            return;
+        var present = new HashMap<String, TypeElement>();
+        if (annotations != null)
+        {
+            for (var annotation : annotations)
+                present.put(annotation.getQualifiedName().toString(), annotation);
+        }
+        for (var step : steps)
+        {
+            var elementsByAnnotation = collect(step, present, roundEnv);
+            if (elementsByAnnotation.isEmpty())
+                continue;
+            var notReady = step.process(Collections.unmodifiableMap(elementsByAnnotation), roundEnv);
+            var ledger = getLedger(step);
+            for (var annotated : elementsByAnnotation.values())
+            {
+                for (var element : annotated)
+                {
+                    if (notReady == null || !notReady.contains(element))
+                        ledger.record(element);
+                }
+            }
+            if (notReady != null && !notReady.isEmpty())
+                defer(step, notReady);
+        }
+        if (roundEnv.processingOver())
+            reportDeferred();
+    }
+
+    private void defer(ProcessingStep step, Set<? extends Element> notReady)
+    {
+        var handles = new LinkedHashSet<ElementHandle>();
+        for (var element : notReady)
+        {
+            try
+            {
+                handles.add(ElementHandle.of(element));
+            }
+            catch (IllegalArgumentException e)
+            {
+                //it could never be passed again, so it would never be processed
+                logger.fail(element, "[%s] Can not defer %s: %s", step.getClass().getSimpleName(), element, e.getMessage());
+            }
+        }
+        if (!handles.isEmpty())
+            deferred.put(step, handles);
+    }
+
+    @NotNull
+    private Map<String, Set<Element>> collect(ProcessingStep step, Map<String, TypeElement> present,
+        RoundEnvironment roundEnv)
+    {
+        var deferredByAnnotation = resolveDeferred(step);
+        var ledger = getLedger(step);
+        var elementsByAnnotation = new LinkedHashMap<String, Set<Element>>();
+        for (var name : step.getAnnotations())
+        {
+            var annotated = new LinkedHashSet<Element>();
+            var annotation = present.get(name);
+            if (annotation != null)
+                annotated.addAll(roundEnv.getElementsAnnotatedWith(annotation));
+            annotated.addAll(deferredByAnnotation.getOrDefault(name, Set.of()));
+            if (ledger.size() > 0)
+                annotated.removeIf(ledger::contains);
+            if (!annotated.isEmpty())
+                elementsByAnnotation.put(name, Collections.unmodifiableSet(annotated));
+        }
+        return elementsByAnnotation;
+    }
+
+    @NotNull
+    private ElementLedger getLedger(ProcessingStep step)
+    {
+        return ledgers.computeIfAbsent(step, s -> new ElementLedger());
+    }
+
+    /**
+     * @return the elements annotated in the types the step deferred, by qualified annotation name
+     */
+    @NotNull
+    private Map<String, Set<Element>> resolveDeferred(ProcessingStep step)
+    {
+        var handles = deferred.remove(step);
+        if (handles == null)
+            return Map.of();
+        var resolved = new ArrayList<Element>(handles.size());
+        for (var handle : handles)
+        {
+            var element = handle.resolve(elements);
+            if (element != null)
+                resolved.add(element);
+            else
+                logger.log(LogLevel.WARN, "[%s] Deferred %s does not exist anymore", step.getClass().getSimpleName(), handle);
+        }
+        var byName = new HashMap<String, Set<Element>>();
+        IndexedRoundEnvironment.index(resolved, elements)
+            .forEach((annotation, annotated) -> byName.put(annotation.getQualifiedName().toString(), annotated));
+        return byName;
+    }
+
+    private void reportDeferred()
+    {
+        for (var entry : deferred.entrySet())
+        {
+            var step = entry.getKey().getClass().getSimpleName();
+            for (var handle : entry.getValue())
+            {
+                var element = handle.resolve(elements);
+                if (element == null)
+                    logger.fail("[%s] %s was never ready to be processed", step, handle);
+                else
+                    logger.fail(element, "[%s] %s was never ready to be processed", step, handle);
+            }
+        }
+        deferred.clear();
+    }
+
+    /**
+     * @return the types, packages and modules that are deferred to the next round
+     */
+    @NotNull
+    Set<ElementHandle> getDeferred()
+    {
+        var all = new LinkedHashSet<ElementHandle>();
+        deferred.values().forEach(all::addAll);
+        return all;
+    }
+}
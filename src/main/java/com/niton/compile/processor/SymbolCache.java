@@ -0,0 +1,159 @@
+package com.niton.compile.processor;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches {@link javax.lang.model.util.Elements#getTypeElement(CharSequence)} lookups by qualified name.
+ * <p>
+ * javac may replace its symbols between rounds, so the cache is only valid for one round.
+ * {@link BaseProcessor} {@link #invalidate() invalidates} its cache after every round, owners of other instances
+ * need to do the same. Types that do not exist are cached too, a type generated in this round is only visible in the
+ * next round anyway. Use {@link #uncached(ProcessingEnvironment)} if nobody invalidates the cache.
+ * </p>
+ * <p>
+ * The javac model is not thread safe and neither is this cache, only use it from the processor thread.
+ * </p>
+ */
+public final class SymbolCache
+{
+    private final ProcessingEnvironment env;
+    private final Map<String, TypeElement> elements = new HashMap<>();
+    private final boolean caching;
+    private long hits;
+    private long misses;
+    private int invalidations;
+
+    public SymbolCache(@NotNull ProcessingEnvironment env)
+    {
+        this(env, true);
+    }
+
+    private SymbolCache(@NotNull ProcessingEnvironment env, boolean caching)
+    {
+        this.env = env;
+        this.caching = caching;
+    }
+
+    /**
+     * @param env the environment to look up types in
+     * @return a cache that looks up every type again, for owners that do not {@link #invalidate() invalidate} it
+     */
+    @NotNull
+    public static SymbolCache uncached(@NotNull ProcessingEnvironment env)
+    {
+        return new SymbolCache(env, false);
+    }
+
+    /**
+     * @param qualifiedName the canonical name of the type
+     * @return the type element or null if there is no such type
+     */
+    @Nullable
+    public TypeElement getTypeElement(@NotNull String qualifiedName)
+    {
+        var element = elements.get(qualifiedName);
+        if (element != null || elements.containsKey(qualifiedName))
+        {
+            hits++;
+            return element;
+        }
+        misses++;
+        element = env.getElementUtils().getTypeElement(qualifiedName);
+        if (caching)
+            elements.put(qualifiedName, element);
+        return element;
+    }
+
+    /**
+     * @param type the class to look up in the compilation
+     * @return the type element or null if there is no such type
+     */
+    @Nullable
+    public TypeElement getTypeElement(@NotNull Class<?> type)
+    {
+        return getTypeElement(type.getCanonicalName() != null ? type.getCanonicalName() : type.getName());
+    }
+
+    /**
+     * @param qualifiedName the canonical name of the type
+     * @return the type of the element
+     * @throws IllegalArgumentException if there is no such type
+     */
+    @NotNull
+    public TypeMirror getType(@NotNull String qualifiedName)
+    {
+        var element = getTypeElement(qualifiedName);
+        if (element == null)
+            throw new IllegalArgumentException(String.format("Type %s is not known to the compiler", qualifiedName));
+        return element.asType();
+    }
+
+    /**
+     * @param type the class to look up in the compilation
+     * @return the type of the element
+     * @throws IllegalArgumentException if there is no such type
+     */
+    @NotNull
+    public TypeMirror getType(@NotNull Class<?> type)
+    {
+        return getType(type.getCanonicalName() != null ? type.getCanonicalName() : type.getName());
+    }
+
+    /**
+     * Forgets all symbols, has to be called when a round is over
+     */
+    public void invalidate()
+    {
+        elements.clear();
+        invalidations++;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that were delegated to the compiler
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of lookups answered from the cache (0 to 1), 0 if nothing was looked up yet
+     */
+    public double getHitRate()
+    {
+        var total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the number of times the cache was invalidated
+     */
+    public int getInvalidations()
+    {
+        return invalidations;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(Locale.ROOT, "SymbolCache{hits=%d, misses=%d, hitRate=%.1f%%, invalidations=%d}",
+            hits, misses, getHitRate() * 100, invalidations);
+    }
+}
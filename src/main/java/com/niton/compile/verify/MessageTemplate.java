@@ -0,0 +1,121 @@
+package com.niton.compile.verify;
+
+import static java.lang.String.format;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A verification message with optional (negating) parts, parsed once and rendered many times.
+ * <pre>
+ * "Controllers should [not ]be interfaces"
+ *  -> "Controllers should not be interfaces" when rendered negated
+ *  -> "Controllers should be interfaces" otherwise
+ * "Controllers should have \\[and\\] in their name"
+ *  -> "Controllers should have [and] in their name" regardless of negation
+ * </pre>
+ * After the brackets are resolved the message is formatted according to {@link String#format(String, Object...)}
+ * if arguments are given, so arguments containing brackets are printed as they are.
+ */
+public final class MessageTemplate
+{
+    /**
+     * Upper bound of cached templates, protects against messages that are formatted before they are passed in
+     */
+    private static final int MAX_CACHED = 1024;
+    private static final Map<String, MessageTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final String pattern;
+    private final String positive;
+    private final String negated;
+
+    private MessageTemplate(String pattern, String positive, String negated)
+    {
+        this.pattern = pattern;
+        this.positive = positive;
+        this.negated = negated;
+    }
+
+    /**
+     * @param pattern the message, negating words are placed in square brackets. Brackets can be escaped with a backslash
+     * @return the (cached) template for the pattern
+     */
+    public static MessageTemplate of(String pattern)
+    {
+        var template = CACHE.get(pattern);
+        if (template != null)
+            return template;
+        template = parse(pattern);
+        if (CACHE.size() < MAX_CACHED)
+            CACHE.putIfAbsent(pattern, template);
+        return template;
+    }
+
+    /**
+     * @param pattern the message, see {@link #of(String)}
+     * @return a new template that is not cached, for messages that are created per element
+     */
+    static MessageTemplate parse(String pattern)
+    {
+        var positive = new StringBuilder(pattern.length());
+        var negated = new StringBuilder(pattern.length());
+        var group = -1; //start of the current bracket group in positive, -1 if outside
+        for (int i = 0; i < pattern.length(); i++)
+        {
+            var c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length() && (pattern.charAt(i + 1) == '[' || pattern.charAt(i + 1) == ']'))
+            {
+                c = pattern.charAt(++i);
+                positive.append(c);
+                negated.append(c);
+            }
+            else if (c == '[' && group < 0)
+            {
+                group = positive.length();
+                positive.append(c);
+            }
+            else if (c == ']' && group >= 0)
+            {
+                positive.setLength(group); //the optional part only exists in the negated message
+                group = -1;
+            }
+            else if (c == '[' || c == ']')
+            {
+                positive.append(c); //unbalanced brackets stay in the positive message
+            }
+            else
+            {
+                positive.append(c);
+                negated.append(c);
+            }
+        }
+        return new MessageTemplate(pattern, positive.toString(), negated.toString());
+    }
+
+    /**
+     * @param negate true to include the bracketed parts
+     * @param args   the arguments for {@link String#format(String, Object...)}, no formatting happens without arguments
+     * @return the message
+     */
+    public String render(boolean negate, Object... args)
+    {
+        var message = negate ? negated : positive;
+        if (args == null || args.length == 0)
+            return message;
+        return format(message, args);
+    }
+
+    /**
+     * @return the pattern this template was parsed from
+     */
+    public String getPattern()
+    {
+        return pattern;
+    }
+
+    @Override
+    public String toString()
+    {
+        return pattern;
+    }
+}
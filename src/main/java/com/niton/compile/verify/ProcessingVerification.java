@@ -2,23 +2,42 @@ package com.niton.compile.verify;
 
 import static java.lang.String.format;
 
-import java.util.function.BooleanSupplier;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import javax.lang.model.element.Element;
 
+import com.niton.compile.ProcessingUtils;
+import com.niton.compile.processor.LogLevel;
 import com.niton.compile.processor.ProcessingLogger;
+import com.niton.compile.processor.ProcessorEvents;
 
 /**
  * A verification for {@link Element}s
+ * <p>
+ * The message is only built when a violation is reported, a passing verification only evaluates the predicate.
+ * </p>
  */
 public class ProcessingVerification implements Reasonable, Verifiable
 {
     private final ProcessingLogger logger;
-    private final BooleanSupplier predicate;
-    private String message;
+    private final Predicate<Element> predicate;
     private final Element element;
+    /**
+     * The message, or null if {@link #pattern} or {@link #messageSupplier} is the message
+     */
+    private final MessageTemplate template;
+    private final Object[] args;
+    /**
+     * The message, parsed when the violation is reported
+     */
+    private final String pattern;
+    private final Supplier<String> messageSupplier;
+    private List<Reason> reasons = List.of();
     private boolean inverted;
+    private VerificationListener listener;
 
     /**
      * Examples for message formatting:
@@ -44,9 +63,56 @@ public class ProcessingVerification implements Reasonable, Verifiable
         String message, Element element)
     {
         logger = log;
-        this.predicate = () -> predicate.test(element);
-        this.message = message;
+        this.predicate = predicate;
+        this.element = element;
+        this.template = null;
+        this.args = null;
+        this.pattern = message;
+        this.messageSupplier = null;
+    }
+
+    /**
+     * Same as {@link #ProcessingVerification(ProcessingLogger, Predicate, String, Element)} with a pre parsed message
+     * that is only formatted if the verification fails and the violation is reported.
+     *
+     * @param log       The logger to fail or warn
+     * @param predicate The predicate to determine if the element is valid
+     * @param template  The message to print if verification is not successful
+     * @param element   the element to verify
+     * @param args      the arguments to format the message with, see {@link MessageTemplate#render(boolean, Object...)}
+     */
+    public ProcessingVerification(ProcessingLogger log, Predicate<Element> predicate,
+        MessageTemplate template, Element element, Object... args)
+    {
+        logger = log;
+        this.predicate = predicate;
         this.element = element;
+        this.template = template;
+        this.args = args;
+        this.pattern = null;
+        this.messageSupplier = null;
+    }
+
+    /**
+     * Same as {@link #ProcessingVerification(ProcessingLogger, Predicate, String, Element)} but the message is only
+     * created if the verification fails and the violation is reported.
+     *
+     * @param log       The logger to fail or warn
+     * @param predicate The predicate to determine if the element is valid
+     * @param message   Creates the message to print if verification is not successful, same format as
+     *                  {@link #ProcessingVerification(ProcessingLogger, Predicate, String, Element)}
+     * @param element   the element to verify
+     */
+    public ProcessingVerification(ProcessingLogger log, Predicate<Element> predicate,
+        Supplier<String> message, Element element)
+    {
+        logger = log;
+        this.predicate = predicate;
+        this.element = element;
+        this.template = null;
+        this.args = null;
+        this.pattern = null;
+        this.messageSupplier = message;
     }
 
     /**
@@ -59,57 +125,119 @@ public class ProcessingVerification implements Reasonable, Verifiable
         return (T) this;
     }
 
+    /**
+     * @param listener notified with the result every time this verification is evaluated
+     * @return this
+     */
+    public ProcessingVerification observedBy(VerificationListener listener)
+    {
+        this.listener = listener;
+        return this;
+    }
+
     @Override
     public Verifiable because(String message, Object... args)
     {
-        this.message = format("%s, because %s", this.message, format(message, args));
+        if (reasons.isEmpty())
+            reasons = new ArrayList<>(1);
+        reasons.add(new Reason(message, args));
         return this;
     }
 
     @Override
     public boolean failOnViolation()
     {
-        var fail = inverted == predicate.getAsBoolean();
+        var fail = !isValid();
         if (fail)
-            logger.fail(element, formatMessage());
+            report(LogLevel.ERROR);
         return !fail;
     }
 
     @Override
     public boolean warnOnViolation()
     {
-        var fail = inverted == predicate.getAsBoolean();
+        var fail = !isValid();
         if (fail)
-            logger.warn(element, formatMessage());
+            report(LogLevel.WARN);
         return !fail;
     }
 
     @Override
     public boolean infoOnViolation()
     {
-        var fail = inverted == predicate.getAsBoolean();
+        var fail = !isValid();
         if (fail)
-            logger.info(element, formatMessage());
+            report(LogLevel.INFO);
         return !fail;
     }
 
     @Override
     public boolean isValid()
     {
-        return inverted != predicate.getAsBoolean();
+        VerificationEvent event = null;
+        if (ProcessorEvents.isRecording())
+        {
+            event = new VerificationEvent();
+            event.begin();
+        }
+        var valid = inverted != predicate.test(element);
+        if (listener != null)
+            listener.verified(element, valid);
+        if (event != null)
+            commit(event, valid);
+        return valid;
+    }
+
+    private void commit(VerificationEvent event, boolean valid)
+    {
+        event.end();
+        if (!event.shouldCommit())
+            return;
+        event.rule = template != null ? template.getPattern() : "custom";
+        event.element = element == null ? null : ProcessingUtils.qualifiedName(element);
+        event.valid = valid;
+        event.commit();
+    }
+
+    private void report(LogLevel level)
+    {
+        logger.log(level, element, rule(), this::message);
+    }
+
+    /**
+     * @return the message pattern (or the call site of the message supplier) and the patterns of the reasons, without
+     * anything formatted per element, so the logger can group the violations of a rule
+     * (see {@link com.niton.compile.processor.DiagnosticBuffer})
+     */
+    private String rule()
+    {
+        var rule = new StringBuilder(inverted ? "not: " : "");
+        if (template != null)
+            rule.append(template.getPattern());
+        else
+            rule.append(pattern != null ? pattern : messageSupplier.getClass().getName());
+        for (var reason : reasons)
+            rule.append(", because ").append(reason.pattern());
+        return rule.toString();
     }
 
-    private String formatMessage()
+    private String message()
     {
-        if (inverted)
-            return unescape(message.replaceAll("(?<!\\\\)[\\[\\]]", ""));//replace all non-escaped brackets
+        //messages and reasons are usually formatted per element, they are not worth caching
+        String message;
+        if (template != null)
+            message = format(template.render(inverted), args == null ? new Object[0] : args);
         else
-            return unescape(message.replaceAll("(?<!\\\\)\\[.+(?<!\\\\)]",
-                "")); //replace all non-escaped brackets and the content between them
+            message = format(MessageTemplate.parse(pattern != null ? pattern : messageSupplier.get()).render(inverted));
+        if (reasons.isEmpty())
+            return message;
+        var builder = new StringBuilder(message);
+        for (var reason : reasons)
+            builder.append(", because ").append(format(MessageTemplate.parse(reason.pattern()).render(inverted), reason.args()));
+        return builder.toString();
     }
 
-    private String unescape(String string)
+    private record Reason(String pattern, Object[] args)
     {
-        return string.replace("\\[", "[").replace("\\]", "]");
     }
 }
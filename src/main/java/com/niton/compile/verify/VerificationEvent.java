@@ -0,0 +1,24 @@
+package com.niton.compile.verify;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a {@link ProcessingVerification} evaluation, see {@link com.niton.compile.processor.ProcessorEvents}
+ */
+@Name("niton.proto.Verification")
+@Label("Verification")
+@Category("Annotation Processing")
+@Description("Evaluation of a verification of an element")
+final class VerificationEvent extends Event
+{
+    @Label("Rule")
+    String rule;
+    @Label("Element")
+    String element;
+    @Label("Valid")
+    boolean valid;
+}
@@ -0,0 +1,16 @@
+package com.niton.compile.verify;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Is notified every time a {@link ProcessingVerification} is evaluated, for example to collect metrics
+ */
+@FunctionalInterface
+public interface VerificationListener
+{
+    /**
+     * @param element the verified element
+     * @param valid   the result of the verification
+     */
+    void verified(Element element, boolean valid);
+}
@@ -1,10 +1,13 @@
 module niton.proto {
   requires com.palantir.javapoet;
   requires java.compiler;
+  requires jdk.jfr;
   requires org.apache.commons.lang3;
   requires static org.jetbrains.annotations;
 
   exports com.niton.compile.processor;
   exports com.niton.compile.verify;
   exports com.niton.compile;
+
+  uses com.niton.compile.processor.BaseProcessor;
 }
\ No newline at end of file
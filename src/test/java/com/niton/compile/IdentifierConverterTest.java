@@ -0,0 +1,68 @@
+package com.niton.compile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class IdentifierConverterTest
+{
+    private final IdentifierConverter converter = new IdentifierConverter();
+
+    @ParameterizedTest
+    @CsvSource({
+        "foo-bar,FooBar",
+        "foo_bar,FooBar",
+        "a.b.c.foo-bar,FooBar",
+        "foo--bar-,FooBar",
+        "a.b.,B",
+        "foo bar,FooBar",
+        "foo.bar baz,BarBaz",
+        "FOO_BAR,FOOBAR",
+        "1st-place,_1stPlace",
+        "class,Class",
+        "\u00fcber-stra\u00dfe,\u00dcberStra\u00dfe",
+        "with$dollar,With$dollar"
+    })
+    void toClassName(String original, String expected)
+    {
+        assertThat(converter.toClassName(original)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "foo-bar,fooBar",
+        "foo_bar,fooBar",
+        "a.b.c.foo-bar,fooBar",
+        "Foo-Bar,fooBar",
+        "1st-place,_1stPlace",
+        "class,class_",
+        "null,null_",
+        "some.int,int_"
+    })
+    void toVariableName(String original, String expected)
+    {
+        assertThat(converter.toVariableName(original)).isEqualTo(expected);
+    }
+
+    @Test
+    void noIdentifierCharacters()
+    {
+        assertThatThrownBy(() -> converter.toClassName("..")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> converter.toVariableName("-_-")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void boundedCacheKeepsResultsCorrect()
+    {
+        var small = new IdentifierConverter(2);
+        for (int i = 0; i < 10; i++)
+        {
+            assertThat(small.toClassName("name-" + i)).isEqualTo("Name" + i);
+            assertThat(small.toVariableName("name-" + i)).isEqualTo("name" + i);
+        }
+        assertThat(small.toClassName("name-0")).isEqualTo("Name0");
+    }
+}
@@ -1,36 +1,49 @@
 package com.niton.compile.processor;
 
 import static javax.tools.Diagnostic.Kind.ERROR;
+import static javax.tools.Diagnostic.Kind.MANDATORY_WARNING;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.not;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 import javax.annotation.processing.Filer;
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
 import javax.tools.JavaFileObject;
 
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.ArgumentCaptor;
@@ -91,6 +104,52 @@ class BaseProcessorTest
         }.applyJavacBugWorkaround()).isTrue();
     }
 
+    @Test
+    void stepsOnlyRunForPresentAnnotations()
+    {
+        var step = mock(ProcessingStep.class);
+        when(step.getAnnotations()).thenReturn(Set.of("com.test.Mapped"));
+        var processor = new BaseProcessor()
+        {
+            @Override
+            protected @NotNull List<ProcessingStep> getSteps()
+            {
+                return List.of(step);
+            }
+
+            @Override
+            public boolean applyJavacBugWorkaround()
+            {
+                return false;
+            }
+        };
+        processor.init(env);
+        assertThat(processor.getSupportedAnnotationTypes()).containsExactly("com.test.Mapped");
+
+        var mapped = mockType("com.test.Mapped");
+        var other = mockType("com.test.Other");
+        var element = mockType("com.test.Foo");
+        var round = mock(RoundEnvironment.class);
+        doReturn(Set.of(element)).when(round).getElementsAnnotatedWith(mapped);
+
+        processor.process(Set.of(), round);
+        processor.process(Set.of(other), round);
+        verify(step, never()).process(any(), any());
+        verify(round, never()).getElementsAnnotatedWith(any(TypeElement.class));
+
+        processor.process(Set.of(other, mapped), round);
+        verify(step).process(eq(Map.of("com.test.Mapped", Set.<Element>of(element))), any());
+    }
+
+    private TypeElement mockType(String qualifiedName)
+    {
+        var name = mock(Name.class);
+        when(name.toString()).thenReturn(qualifiedName);
+        var type = mock(TypeElement.class);
+        when(type.getQualifiedName()).thenReturn(name);
+        return type;
+    }
+
     @Test
     void writeClass() throws IOException
     {
@@ -118,6 +177,249 @@ class BaseProcessorTest
             .contains("@Generated");
     }
 
+    @Test
+    void writeClassWithOriginatingElements() throws IOException
+    {
+        var env = mock(ProcessingEnvironment.class);
+        processor.init(env);
+        var origin = mock(TypeElement.class);
+
+        var filer = mock(Filer.class);
+        var file = mock(JavaFileObject.class);
+        when(env.getFiler()).thenReturn(filer);
+        when(filer.createSourceFile(any(), any())).thenReturn(file);
+        when(file.openWriter()).thenReturn(new StringWriter());
+
+        processor.writeClass("com.test", TypeSpec.classBuilder("Test").build(), origin);
+
+        verify(filer).createSourceFile(any(), eq(origin));
+    }
+
+    @Test
+    void fixedGeneratedDate() throws IOException
+    {
+        assertThat(writeTestClass(Map.of("proto.generated.date", "0")))
+            .contains("date = \"1970-01-01T00:00:00Z\"");
+    }
+
+    @Test
+    void reproducibleWithoutDate() throws IOException
+    {
+        assumeTrue(System.getenv("SOURCE_DATE_EPOCH") == null);
+        assertThat(writeTestClass(Map.of("proto.reproducible", "true")))
+            .contains("@Generated")
+            .doesNotContain("date");
+    }
+
+    @Test
+    void reproducibleOutputIsIdentical() throws IOException
+    {
+        assertThat(writeTestClass(Map.of("proto.reproducible", "true")))
+            .isEqualTo(writeTestClass(Map.of("proto.reproducible", "true")));
+    }
+
+    @Test
+    void invalidGeneratedDateIsIgnored() throws IOException
+    {
+        assumeTrue(System.getenv("SOURCE_DATE_EPOCH") == null);
+        var env = mock(ProcessingEnvironment.class);
+        var messager = mock(Messager.class);
+        var filer = mock(Filer.class);
+        var writer = new StringWriter();
+        var file = mock(JavaFileObject.class);
+        when(env.getOptions()).thenReturn(Map.of("proto.generated.date", "yesterday", "proto.reproducible", "true"));
+        when(env.getMessager()).thenReturn(messager);
+        when(env.getFiler()).thenReturn(filer);
+        when(filer.createSourceFile(any(), any())).thenReturn(file);
+        when(file.openWriter()).thenReturn(writer);
+        processor.init(env);
+
+        processor.writeClass("com.test", TypeSpec.classBuilder("Test").build());
+
+        verify(messager).printMessage(eq(ERROR), contains("proto.generated.date"));
+        assertThat(writer.toString())
+            .contains("@Generated")
+            .doesNotContain("date");
+    }
+
+    @Test
+    void bufferedDiagnosticsAreReportedAtEndOfRound()
+    {
+        var messager = mock(Messager.class);
+        when(env.getMessager()).thenReturn(messager);
+        when(env.getOptions()).thenReturn(Map.of("proto.diagnostics.buffer", "true"));
+        processor.init(env);
+        var element = mock(Element.class);
+
+        processor.logger.warn(element, "bad element");
+        processor.logger.warn(element, "bad element");
+        verifyNoInteractions(messager);
+
+        processor.process(null, null);
+        verify(messager, times(1)).printMessage(MANDATORY_WARNING, "bad element", element);
+    }
+
+    @Test
+    void profileIsWrittenWhenProcessingIsOver(@TempDir Path directory) throws IOException
+    {
+        when(env.getOptions()).thenReturn(Map.of("proto.profile.dir", directory.toString(),
+            "proto.profile.format", "json"));
+        processor.init(env);
+        var round = mock(RoundEnvironment.class);
+        doReturn(Set.of(mock(TypeElement.class), mock(TypeElement.class))).when(round).getRootElements();
+
+        processor.process(Set.of(), round);
+        processor.writeClass("com.test", TypeSpec.classBuilder("Test").build());
+        processor.verifier.isClass(mock(TypeElement.class)).isValid();
+        when(round.processingOver()).thenReturn(true);
+        processor.process(Set.of(), round);
+
+        var report = Files.readString(directory.resolve(processor.getClass().getName() + ".profile.json"));
+        assertThat(report)
+            .contains("{\"round\":1,\"rootElements\":2,")
+            .contains("\"files\":1,")
+            .contains("\"verifications\":1,\"failedVerifications\":1}");
+    }
+
+    private String writeTestClass(Map<String, String> options) throws IOException
+    {
+        var env = mock(ProcessingEnvironment.class);
+        when(env.getOptions()).thenReturn(options);
+        processor.init(env);
+
+        var filer = mock(Filer.class);
+        var writer = new StringWriter();
+        var file = mock(JavaFileObject.class);
+        when(env.getFiler()).thenReturn(filer);
+        when(filer.createSourceFile(any(), any())).thenReturn(file);
+        when(file.openWriter()).thenReturn(writer);
+
+        processor.writeClass("com.test", TypeSpec.classBuilder("Test").build());
+        return writer.toString();
+    }
+
+    @Test
+    void libraryOptionsAreSupported()
+    {
+        assertThat(processor.getSupportedOptions())
+            .contains("proto.reproducible", "proto.generated.date")
+            .doesNotContain("org.gradle.annotation.processing.isolating", "org.gradle.annotation.processing.aggregating");
+    }
+
+    @Test
+    void incrementalModeIsReportedAsOption()
+    {
+        var isolating = new BaseProcessor()
+        {
+            @Override
+            public boolean performProcessing(@NotNull Set<? extends TypeElement> annotations,
+                @NotNull RoundEnvironment roundEnvironment)
+            {
+                return false;
+            }
+
+            @Override
+            public @NotNull IncrementalMode getIncrementalMode()
+            {
+                return IncrementalMode.ISOLATING;
+            }
+        };
+        assertThat(isolating.getSupportedOptions()).contains("org.gradle.annotation.processing.isolating");
+    }
+
+    @Test
+    void writeClassesInOrder() throws IOException
+    {
+        var env = mock(ProcessingEnvironment.class);
+        processor.init(env);
+        var filer = mock(Filer.class);
+        var writers = new ArrayList<StringWriter>();
+        when(env.getFiler()).thenReturn(filer);
+        when(filer.createSourceFile(any(), any())).thenAnswer(invocation -> {
+            var file = mock(JavaFileObject.class);
+            var writer = new StringWriter();
+            writers.add(writer);
+            when(file.openWriter()).thenReturn(writer);
+            return file;
+        });
+        var classes = IntStream.range(0, 20)
+            .mapToObj(i -> TypeSpec.classBuilder("Test" + i).build())
+            .toList();
+
+        processor.writeClasses("com.test", classes);
+
+        var names = ArgumentCaptor.forClass(CharSequence.class);
+        verify(filer, times(20)).createSourceFile(names.capture(), any());
+        assertThat(names.getAllValues())
+            .extracting(CharSequence::toString)
+            .containsExactlyElementsOf(IntStream.range(0, 20).mapToObj(i -> "com.test.Test" + i).toList());
+        assertThat(writers.get(7).toString()).contains("class Test7");
+    }
+
+    @Test
+    void enqueuedClassesAreWrittenAtEndOfRound() throws IOException
+    {
+        var filer = mock(Filer.class);
+        var file = mock(JavaFileObject.class);
+        when(env.getFiler()).thenReturn(filer);
+        when(filer.createSourceFile(any(), any())).thenReturn(file);
+        when(file.openWriter()).thenReturn(new StringWriter());
+        processor.init(env);
+        var first = mock(TypeElement.class);
+        var second = mock(TypeElement.class);
+
+        processor.enqueueClass("com.test", TypeSpec.classBuilder("Test").build(), first);
+        processor.enqueueClass("com.test", TypeSpec.classBuilder("Test").build(), second);
+        verify(filer, never()).createSourceFile(any(), any());
+
+        processor.process(Set.of(), mock(RoundEnvironment.class));
+        verify(filer, times(1)).createSourceFile(any(), eq(first), eq(second));
+    }
+
+    @Test
+    void isolatingProcessorsDoNotMergeOriginatingElements() throws IOException
+    {
+        var messager = mock(Messager.class);
+        var filer = mock(Filer.class);
+        var file = mock(JavaFileObject.class);
+        when(env.getMessager()).thenReturn(messager);
+        when(env.getFiler()).thenReturn(filer);
+        when(filer.createSourceFile(any(), any())).thenReturn(file);
+        when(file.openWriter()).thenReturn(new StringWriter());
+        doReturn(IncrementalMode.ISOLATING).when(processor).getIncrementalMode();
+        processor.init(env);
+        var first = mock(TypeElement.class);
+        var second = mock(TypeElement.class);
+
+        processor.enqueueClass("com.test", TypeSpec.classBuilder("Test").build(), first);
+        processor.enqueueClass("com.test", TypeSpec.classBuilder("Test").build(), second);
+        processor.process(Set.of(), mock(RoundEnvironment.class));
+
+        verify(filer, times(1)).createSourceFile(any(), eq(first));
+        verify(messager).printMessage(eq(MANDATORY_WARNING), contains("isolating processor"));
+    }
+
+    @Test
+    void enqueuedClassFromPreviousRoundIsSkipped() throws IOException
+    {
+        var messager = mock(Messager.class);
+        var filer = mock(Filer.class);
+        var file = mock(JavaFileObject.class);
+        when(env.getMessager()).thenReturn(messager);
+        when(env.getFiler()).thenReturn(filer);
+        when(filer.createSourceFile(any(), any())).thenReturn(file);
+        when(file.openWriter()).thenReturn(new StringWriter());
+        processor.init(env);
+
+        processor.enqueueClass("com.test", TypeSpec.classBuilder("Test").build());
+        processor.process(Set.of(), mock(RoundEnvironment.class));
+        processor.enqueueClass("com.test", TypeSpec.classBuilder("Test").build());
+        processor.process(Set.of(), mock(RoundEnvironment.class));
+
+        verify(filer, times(1)).createSourceFile(any(), any());
+        verify(messager).printMessage(eq(MANDATORY_WARNING), contains("already written"));
+    }
+
     @Test
     void writeClassException() throws IOException
     {
@@ -139,6 +441,7 @@ class BaseProcessorTest
         var messageCaptor = ArgumentCaptor.forClass(String.class);
         verify(messager, times(2)).printMessage(eq(ERROR), messageCaptor.capture());
         assertThat(messageCaptor.getValue()).contains("some exception");
+        assertThat(processor.getSourceManifest().getMisses()).as("failed writes are not fingerprinted").isZero();
     }
 
     @ParameterizedTest
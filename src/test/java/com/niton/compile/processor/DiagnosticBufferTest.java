@@ -0,0 +1,114 @@
+package com.niton.compile.processor;
+
+import static javax.tools.Diagnostic.Kind.ERROR;
+import static javax.tools.Diagnostic.Kind.MANDATORY_WARNING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import javax.annotation.processing.Messager;
+import javax.lang.model.element.Element;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DiagnosticBufferTest
+{
+    private Messager messager;
+
+    @BeforeEach
+    void setUp()
+    {
+        messager = mock(Messager.class);
+    }
+
+    @Test
+    void messagesAreReportedOnFlush()
+    {
+        var buffer = new DiagnosticBuffer(messager, 10);
+        var element = mock(Element.class);
+        buffer.add(ERROR, "broken", element);
+        buffer.add(MANDATORY_WARNING, "global", null);
+        verifyNoInteractions(messager);
+
+        buffer.flush();
+        var order = inOrder(messager);
+        order.verify(messager).printMessage(ERROR, "broken", element);
+        order.verify(messager).printMessage(MANDATORY_WARNING, "global");
+
+        buffer.flush();
+        verifyNoMoreInteractions(messager);
+    }
+
+    @Test
+    void duplicatesAreReportedOnce()
+    {
+        var buffer = new DiagnosticBuffer(messager, 10);
+        var element = mock(Element.class);
+        for (int i = 0; i < 100; i++)
+            buffer.add(ERROR, "broken", element);
+        buffer.flush();
+
+        verify(messager).printMessage(ERROR, "broken", element);
+        verifyNoMoreInteractions(messager);
+        assertThat(buffer.getDuplicates()).isEqualTo(99);
+    }
+
+    @Test
+    void repeatsAreSummarized()
+    {
+        var buffer = new DiagnosticBuffer(messager, 2);
+        var first = mock(Element.class);
+        var second = mock(Element.class);
+        buffer.add(MANDATORY_WARNING, "bad base type", first);
+        buffer.add(MANDATORY_WARNING, "bad base type", second);
+        for (int i = 0; i < 5; i++)
+            buffer.add(MANDATORY_WARNING, "bad base type", mock(Element.class));
+        buffer.flush();
+
+        verify(messager).printMessage(MANDATORY_WARNING, "bad base type", first);
+        verify(messager).printMessage(MANDATORY_WARNING, "bad base type", second);
+        verify(messager).printMessage(MANDATORY_WARNING, "bad base type (and 5 more)");
+        verifyNoMoreInteractions(messager);
+    }
+
+    @Test
+    void repeatsAreCountedPerRule()
+    {
+        var buffer = new DiagnosticBuffer(messager, 2);
+        var elements = new Element[5];
+        for (int i = 0; i < elements.length; i++)
+        {
+            elements[i] = mock(Element.class);
+            buffer.add(ERROR, "%s should be a class", "Type" + i + " should be a class", elements[i]);
+        }
+        buffer.add(ERROR, "%s should be a class", "Type0 should be a class", elements[0]);
+        buffer.flush();
+
+        verify(messager).printMessage(ERROR, "Type0 should be a class", elements[0]);
+        verify(messager).printMessage(ERROR, "Type1 should be a class", elements[1]);
+        verify(messager).printMessage(ERROR, "Type0 should be a class (and 3 more)");
+        verifyNoMoreInteractions(messager);
+        assertThat(buffer.getDuplicates()).isEqualTo(1);
+    }
+
+    @Test
+    void noLimit()
+    {
+        var buffer = new DiagnosticBuffer(messager, 0);
+        var elements = new Element[50];
+        for (int i = 0; i < elements.length; i++)
+        {
+            elements[i] = mock(Element.class);
+            buffer.add(ERROR, "broken", elements[i]);
+        }
+        buffer.flush();
+
+        for (var element : elements)
+            verify(messager).printMessage(ERROR, "broken", element);
+        verifyNoMoreInteractions(messager);
+    }
+}
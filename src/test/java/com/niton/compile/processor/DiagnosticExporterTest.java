@@ -0,0 +1,109 @@
+package com.niton.compile.processor;
+
+import static javax.tools.Diagnostic.Kind.ERROR;
+import static javax.tools.Diagnostic.Kind.NOTE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiagnosticExporterTest
+{
+    @TempDir
+    Path directory;
+    private ProcessingEnvironment env;
+
+    @BeforeEach
+    void setUp()
+    {
+        env = mock(ProcessingEnvironment.class);
+    }
+
+    @Test
+    void diagnosticsAreWrittenAsJsonLines() throws IOException
+    {
+        var file = directory.resolve("build/diagnostics.jsonl");
+        var element = mock(TypeElement.class);
+        var name = mock(Name.class);
+        when(name.toString()).thenReturn("com.test.Foo");
+        when(element.getQualifiedName()).thenReturn(name);
+
+        try (var exporter = DiagnosticExporter.open(env, file, "com.test.Processor"))
+        {
+            exporter.startRound();
+            exporter.export(ERROR, element, "Foo should be \"final\"\n\tnow");
+        }
+
+        var lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0))
+            .startsWith("{\"timestamp\":\"")
+            .endsWith(",\"round\":1,\"processor\":\"com.test.Processor\",\"element\":\"com.test.Foo\","
+                + "\"kind\":\"ERROR\",\"message\":\"Foo should be \\\"final\\\"\\n\\tnow\"}");
+    }
+
+    @Test
+    void processorsShareTheFile() throws IOException
+    {
+        var file = directory.resolve("diagnostics.jsonl");
+        Files.writeString(file, "from the previous build\n");
+
+        var first = DiagnosticExporter.open(env, file, "First");
+        var second = DiagnosticExporter.open(env, file, "Second");
+        first.export(NOTE, null, "one");
+        second.export(NOTE, null, "two");
+        first.close();
+        second.export(NOTE, null, "three");
+        second.close();
+
+        assertThat(Files.readAllLines(file))
+            .hasSize(3)
+            .allMatch(line -> line.contains("\"element\":null"))
+            .anyMatch(line -> line.contains("\"processor\":\"Second\"") && line.endsWith("\"message\":\"three\"}"));
+    }
+
+    @Test
+    void filesAreSharedPerCompilation() throws IOException
+    {
+        var file = directory.resolve("diagnostics.jsonl");
+        var aborted = DiagnosticExporter.open(env, file, "Aborted");
+        aborted.export(NOTE, null, "never written");
+
+        try (var next = DiagnosticExporter.open(mock(ProcessingEnvironment.class), file, "Next"))
+        {
+            next.export(NOTE, null, "next build");
+        }
+
+        assertThat(Files.readAllLines(file)).singleElement().asString().contains("\"message\":\"next build\"");
+        aborted.close();
+    }
+
+    @Test
+    void loggerExportsReportedMessages() throws IOException
+    {
+        var file = directory.resolve("diagnostics.jsonl");
+        var exporter = DiagnosticExporter.open(env, file, "Processor");
+        var logger = new ProcessingLogger(mock(Messager.class), LogLevel.WARN, null, exporter);
+
+        logger.info("not reported");
+        logger.fail("reported");
+        exporter.close();
+
+        assertThat(Files.readAllLines(file))
+            .singleElement()
+            .asString()
+            .contains("\"kind\":\"ERROR\",\"message\":\"reported\"");
+    }
+}
@@ -0,0 +1,55 @@
+package com.niton.compile.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Set;
+
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+
+import org.junit.jupiter.api.Test;
+
+class ElementLedgerTest
+{
+    private final ElementLedger ledger = new ElementLedger();
+
+    @Test
+    void elementsAreRecordedByName()
+    {
+        var first = mockType("com.test.Foo");
+        var sameInLaterRound = mockType("com.test.Foo");
+
+        assertThat(ledger.record(first)).isTrue();
+        assertThat(ledger.record(sameInLaterRound)).isFalse();
+        assertThat(ledger.contains(sameInLaterRound)).isTrue();
+        assertThat(ledger.contains(mockType("com.test.Bar"))).isFalse();
+        assertThat(ledger.size()).isEqualTo(1);
+    }
+
+    @Test
+    void onlyNewElementsAreReturned()
+    {
+        var processed = mockType("com.test.Foo");
+        var added = mockType("com.test.Bar");
+        ledger.record(processed);
+        var round = mock(RoundEnvironment.class);
+        doReturn(Set.of(processed, added)).when(round).getRootElements();
+        doReturn(Set.of(processed, added)).when(round).getElementsAnnotatedWith(Deprecated.class);
+
+        assertThat(ledger.getNewRootElements(round)).containsExactly(added);
+        assertThat(ledger.getNewElementsAnnotatedWith(round, Deprecated.class)).containsExactly(added);
+    }
+
+    private TypeElement mockType(String qualifiedName)
+    {
+        var name = mock(Name.class);
+        when(name.toString()).thenReturn(qualifiedName);
+        var type = mock(TypeElement.class);
+        when(type.getQualifiedName()).thenReturn(name);
+        return type;
+    }
+}
@@ -0,0 +1,146 @@
+package com.niton.compile.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HierarchyOracleTest
+{
+    private Types types;
+    private ProcessingEnvironment env;
+    private HierarchyOracle oracle;
+    private TypeElement object;
+    private TypeElement base;
+    private TypeElement service;
+    private TypeElement element;
+
+    @BeforeEach
+    void setUp()
+    {
+        types = mock(Types.class);
+        env = mock(ProcessingEnvironment.class);
+        when(env.getTypeUtils()).thenReturn(types);
+        oracle = new HierarchyOracle(env);
+        object = mockType("java.lang.Object");
+        base = mockType("com.test.Base", object);
+        service = mockType("com.test.Service", object);
+        element = mockType("com.test.Element", base, service);
+    }
+
+    @Test
+    void supertypesAreWalkedOnce()
+    {
+        var unrelated = mockType("com.test.Unrelated", object);
+
+        for (int i = 0; i < 3; i++)
+        {
+            assertThat(oracle.isSubtype(element, base.asType())).isTrue();
+            assertThat(oracle.isSubtype(element, service.asType())).isTrue();
+            assertThat(oracle.isSubtype(element, object.asType())).isTrue();
+            assertThat(oracle.isSubtype(element, unrelated.asType())).isFalse();
+        }
+
+        verify(types, times(1)).directSupertypes(element.asType());
+        verify(types, times(1)).directSupertypes(object.asType());
+        verify(types, never()).isSubtype(any(), any());
+        assertThat(oracle.getMisses()).isEqualTo(1);
+        assertThat(oracle.getHits()).isEqualTo(11);
+    }
+
+    @Test
+    void closuresOfSupertypesAreShared()
+    {
+        oracle.isSubtype(element, object.asType());
+        assertThat(oracle.isSubtype(base, object.asType())).isTrue();
+        assertThat(oracle.isSubtype(base, service.asType())).isFalse();
+
+        verify(types, times(1)).directSupertypes(base.asType());
+    }
+
+    @Test
+    void assignabilityUsesTheClosure()
+    {
+        assertThat(oracle.isAssignable(element, service.asType())).isTrue();
+        assertThat(oracle.isAssignable(base, service.asType())).isFalse();
+
+        verify(types, never()).isAssignable(any(), any());
+    }
+
+    @Test
+    void parameterizedSupertypesAreDelegated()
+    {
+        var parameterized = mock(DeclaredType.class);
+        when(parameterized.getKind()).thenReturn(TypeKind.DECLARED);
+        doReturn(base).when(parameterized).asElement();
+        doReturn(List.of(object.asType())).when(parameterized).getTypeArguments();
+        when(types.isSubtype(element.asType(), parameterized)).thenReturn(false);
+
+        assertThat(oracle.isSubtype(element, parameterized)).isFalse();
+        verify(types).isSubtype(element.asType(), parameterized);
+    }
+
+    @Test
+    void invalidate()
+    {
+        oracle.isSubtype(element, base.asType());
+        oracle.invalidate();
+        oracle.isSubtype(element, base.asType());
+
+        verify(types, times(2)).directSupertypes(element.asType());
+    }
+
+    @Test
+    void uncachedChecksAreDelegated()
+    {
+        var uncached = HierarchyOracle.uncached(env);
+        var target = base.asType();
+
+        uncached.isSubtype(element, target);
+        uncached.isSubtype(element, target);
+        uncached.isAssignable(element, target);
+        uncached.isAssignable(element, target);
+
+        verify(types, times(2)).isSubtype(element.asType(), target);
+        verify(types, times(2)).isAssignable(element.asType(), target);
+        verify(types, never()).directSupertypes(any());
+        assertThat(uncached.getHits()).isZero();
+    }
+
+    private TypeElement mockType(String qualifiedName, TypeElement... supertypes)
+    {
+        var type = mock(TypeElement.class);
+        var name = mock(Name.class);
+        lenient().when(name.toString()).thenReturn(qualifiedName);
+        lenient().when(name.isEmpty()).thenReturn(qualifiedName.isEmpty());
+        lenient().when(type.getQualifiedName()).thenReturn(name);
+        var mirror = mock(DeclaredType.class);
+        lenient().when(mirror.getKind()).thenReturn(TypeKind.DECLARED);
+        lenient().doReturn(type).when(mirror).asElement();
+        lenient().when(type.asType()).thenReturn(mirror);
+        List<TypeMirror> direct = new ArrayList<>();
+        for (var supertype : supertypes)
+            direct.add(supertype.asType());
+        lenient().doReturn(direct).when(types).directSupertypes(mirror);
+        return type;
+    }
+}
@@ -0,0 +1,166 @@
+package com.niton.compile.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.util.Elements;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IndexedRoundEnvironmentTest
+{
+    private Elements elements;
+    private ProcessingEnvironment env;
+    private TypeElement deprecated;
+
+    @BeforeEach
+    void setUp()
+    {
+        elements = mock(Elements.class);
+        env = mock(ProcessingEnvironment.class);
+        when(env.getElementUtils()).thenReturn(elements);
+        deprecated = mock(TypeElement.class);
+        when(deprecated.getKind()).thenReturn(ElementKind.ANNOTATION_TYPE);
+        when(elements.getTypeElement("java.lang.Deprecated")).thenReturn(deprecated);
+    }
+
+    @Test
+    void rootElementsAreScannedOnce()
+    {
+        var annotated = mock(TypeElement.class);
+        var plain = mock(TypeElement.class);
+        var mirror = mock(AnnotationMirror.class);
+        var mirrorType = mock(DeclaredType.class);
+        when(mirror.getAnnotationType()).thenReturn(mirrorType);
+        when(mirrorType.asElement()).thenReturn(deprecated);
+        doReturn(List.of(mirror)).when(elements).getAllAnnotationMirrors(annotated);
+        var round = mock(RoundEnvironment.class);
+        doReturn(Set.of(annotated, plain)).when(round).getRootElements();
+
+        var indexed = new IndexedRoundEnvironment(round, elements);
+        assertThat(indexed.getElementsAnnotatedWith(deprecated)).singleElement().isSameAs(annotated);
+        assertThat(indexed.getElementsAnnotatedWith(Deprecated.class)).singleElement().isSameAs(annotated);
+        assertThat(indexed.getElementsAnnotatedWith(FunctionalInterface.class)).isEmpty();
+        assertThat(indexed.getAnnotations()).containsExactly(deprecated);
+
+        verify(round, times(1)).getRootElements();
+        verify(elements, times(1)).getAllAnnotationMirrors(annotated);
+    }
+
+    @Test
+    void onlyAnnotationTypesCanBeQueried()
+    {
+        var indexed = new IndexedRoundEnvironment(mock(RoundEnvironment.class), elements);
+        assertThatThrownBy(() -> indexed.getElementsAnnotatedWith(mock(TypeElement.class)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void processorsShareTheIndexOfARound()
+    {
+        var round = mock(RoundEnvironment.class);
+        var indexed = IndexedRoundEnvironment.of(env, round);
+
+        assertThat(IndexedRoundEnvironment.of(env, round)).isSameAs(indexed);
+        assertThat(IndexedRoundEnvironment.of(env, indexed)).isSameAs(indexed);
+        assertThat(IndexedRoundEnvironment.of(env, mock(RoundEnvironment.class))).isNotSameAs(indexed);
+        assertThat(IndexedRoundEnvironment.of(env, null)).isNull();
+    }
+
+    @Test
+    void sharedIndexDoesNotKeepTheCompilationAlive() throws InterruptedException
+    {
+        var compilation = runRound();
+        for (int i = 0; i < 50 && compilation.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(compilation.get()).as("The scope of the compilation should be collected").isNull();
+    }
+
+    /**
+     * Indexes a round that references the element utils like the one of javac.
+     * Proxies instead of mocks, mockito keeps references to the arguments of invocations.
+     */
+    private WeakReference<Elements> runRound()
+    {
+        var elements = proxy(Elements.class, Map.of("getAllAnnotationMirrors", List.of()));
+        var processingEnv = proxy(ProcessingEnvironment.class, Map.of("getElementUtils", elements));
+
+        var indexed = (IndexedRoundEnvironment) IndexedRoundEnvironment.of(processingEnv, new JavacRound(elements));
+        assertThat(indexed.getAnnotations()).isEmpty();
+        return new WeakReference<>(elements);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Map<String, Object> results)
+    {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName())
+            {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName();
+                default:
+                    return results.get(method.getName());
+            }
+        });
+    }
+
+    private record JavacRound(Elements elements) implements RoundEnvironment
+    {
+        @Override
+        public boolean processingOver()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean errorRaised()
+        {
+            return false;
+        }
+
+        @Override
+        public Set<? extends Element> getRootElements()
+        {
+            return Set.of();
+        }
+
+        @Override
+        public Set<? extends Element> getElementsAnnotatedWith(TypeElement annotation)
+        {
+            return Set.of();
+        }
+
+        @Override
+        public Set<? extends Element> getElementsAnnotatedWith(Class<? extends Annotation> annotation)
+        {
+            return Set.of();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.niton.compile.processor;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.lenient;
@@ -14,7 +15,11 @@ import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.processing.Filer;
@@ -23,6 +28,7 @@ import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
 import javax.tools.JavaFileObject;
 
 import org.jetbrains.annotations.NotNull;
@@ -65,15 +71,16 @@ class LastRoundInterceptorTest
         var processor = mock(Processable.class);
         when(processor.process(any(), any())).thenReturn(true);
 
-        TypeElement fakeElement = mockFakeElement();
         var round = mock(RoundEnvironment.class);
-        when(round.processingOver()).thenReturn(false);
-        doReturn(Set.of(fakeElement)).when(round).getRootElements();
+        doReturn(Set.of(mockRealElement())).when(round).getRootElements();
+        var fakeRound = mock(RoundEnvironment.class);
+        doReturn(Set.of(mockFakeElement())).when(fakeRound).getRootElements();
 
-        assertThat(lri.process(null, round, processor)).isTrue();
+        assertThat(lri.process(null, round, processor)).isTrue();//writes the marker
+        assertThat(lri.process(null, fakeRound, processor)).isTrue();
         var captor = ArgumentCaptor.forClass(RoundEnvironment.class);
-        verify(processor).process(any(), captor.capture());
-        assertThat(captor.getValue().processingOver()).isTrue();
+        verify(processor, times(2)).process(any(), captor.capture());
+        assertThat(captor.getAllValues()).extracting(RoundEnvironment::processingOver).containsExactly(false, true);
     }
 
     @Test
@@ -84,14 +91,16 @@ class LastRoundInterceptorTest
         var processor = mock(Processable.class);
         when(processor.process(any(), any())).thenReturn(true);
 
+        var element = mockRealElement();
         TypeElement fakeElement = mockFakeElement();
         var round = mock(RoundEnvironment.class);
-        when(round.processingOver()).thenReturn(false, false);
-        doReturn(Set.of(fakeElement), Set.of(fakeElement)).when(round).getRootElements();
+        when(round.processingOver()).thenReturn(false, false, false);
+        doReturn(Set.of(element), Set.of(fakeElement), Set.of(fakeElement)).when(round).getRootElements();
 
+        assertThat(lri.process(null, round, processor)).isTrue();//normal round
         assertThat(lri.process(null, round, processor)).isTrue();//fakeLastRound-counted
         assertThat(lri.process(null, round, processor)).isFalse();//roundAfterFake-not counted
-        verify(processor, times(1)).process(any(), any());
+        verify(processor, times(2)).process(any(), any());
     }
 
     @Test
@@ -115,6 +124,21 @@ class LastRoundInterceptorTest
         assertThat(captor.getValue().processingOver()).isFalse();
     }
 
+    @Test
+    void markersOfOtherProcessorsEndTheRounds()
+    {
+        LastRoundInterceptor lri = new LastRoundInterceptor(env, mock(ProcessingLogger.class), null, "test");
+
+        var processor = mock(Processable.class);
+        var round = mock(RoundEnvironment.class);
+        doReturn(Set.of(mockTypeElement("com.niton.compile.processor.com_example_Other$jdk_8256826_bug$round4"))).when(round).getRootElements();
+
+        lri.process(null, round, processor);
+        var captor = ArgumentCaptor.forClass(RoundEnvironment.class);
+        verify(processor).process(any(), captor.capture());
+        assertThat(captor.getValue().processingOver()).isTrue();
+    }
+
     @Test
     void proxyEnvironment()
     {
@@ -158,27 +182,191 @@ class LastRoundInterceptorTest
         assertThat(res).containsExactlyInAnyOrder(round.getElementsAnnotatedWith(Override.class).toArray(Element[]::new));
     }
 
+    @Test
+    void processorsShareMarkers() throws IOException
+    {
+        var first = new LastRoundInterceptor(env, mock(ProcessingLogger.class), null, "com.example.First");
+        var second = new LastRoundInterceptor(env, mock(ProcessingLogger.class), null, "com.example.Second");
+
+        var processor = mock(Processable.class);
+        var element = mockRealElement();
+        var round1 = mock(RoundEnvironment.class);
+        var round2 = mock(RoundEnvironment.class);
+        doReturn(Set.of(element)).when(round1).getRootElements();
+        doReturn(Set.of(mockRealElement())).when(round2).getRootElements();
+
+        first.process(null, round1, processor);
+        second.process(null, round1, processor);
+        second.process(null, round2, processor);
+        first.process(null, round2, processor);
+
+        var names = ArgumentCaptor.forClass(CharSequence.class);
+        verify(env.getFiler(), times(2)).createSourceFile(names.capture(), any());
+        assertThat(names.getAllValues()).map(CharSequence::toString).containsExactly(
+            "com.niton.compile.processor.com_example_First$jdk_8256826_bug$round0",
+            "com.niton.compile.processor.com_example_Second$jdk_8256826_bug$round1"
+        );
+    }
+
+    @Test
+    void replacedRoundsShareMarkers() throws IOException
+    {
+        var first = new LastRoundInterceptor(env, mock(ProcessingLogger.class), null, "first");
+        var second = new LastRoundInterceptor(env, mock(ProcessingLogger.class), null, "second");
+
+        var processor = mock(Processable.class);
+        var elements = Set.of(mockRealElement());
+        var round = mock(RoundEnvironment.class);
+        var wrapped = mock(RoundEnvironment.class);
+        doReturn(elements).when(round).getRootElements();
+        doReturn(Set.copyOf(elements)).when(wrapped).getRootElements();
+
+        first.process(null, round, processor);
+        second.process(null, wrapped, processor);
+
+        verify(env.getFiler(), times(1)).createSourceFile(any(), any());
+    }
+
+    @Test
+    void isolatingMarkersHaveOneOriginatingElement() throws IOException
+    {
+        var lri = new LastRoundInterceptor(env, mock(ProcessingLogger.class), null, "test", IncrementalMode.ISOLATING);
+        var element = mockRealElement();
+        var round = mock(RoundEnvironment.class);
+        doReturn(Set.of(element)).when(round).getRootElements();
+
+        lri.process(null, round, mock(Processable.class));
+
+        verify(env.getFiler()).createSourceFile(any(), eq(element));
+    }
+
+    @Test
+    void markersDoNotKeepTheCompilationAlive() throws InterruptedException
+    {
+        var elements = runCompilation();
+        for (int i = 0; i < 50 && elements.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(elements.get()).as("The scope of the compilation should be collected").isNull();
+    }
+
+    /**
+     * Runs a round of a compilation whose round references the element utils like the one of javac.
+     * Proxies instead of mocks, mockito keeps references to the arguments of invocations.
+     */
+    private WeakReference<Elements> runCompilation()
+    {
+        var elements = proxy(Elements.class, null);
+        var filer = proxy(Filer.class, new IOException("read only"));
+        var processingEnv = proxy(ProcessingEnvironment.class, null, Map.of("getElementUtils", elements, "getFiler", filer));
+        var lri = new LastRoundInterceptor(processingEnv, mock(ProcessingLogger.class), null, "test");
+
+        lri.process(null, new JavacRound(elements, Set.of(mockRealElement())), (annotations, round) -> false);
+        return new WeakReference<>(elements);
+    }
+
+    private static <T> T proxy(Class<T> type, Exception failure)
+    {
+        return proxy(type, failure, Map.of());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Exception failure, Map<String, Object> results)
+    {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName())
+            {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName();
+                default:
+                    if (failure != null)
+                        throw failure;
+                    return results.get(method.getName());
+            }
+        });
+    }
+
+    private record JavacRound(Elements elements, Set<? extends Element> rootElements) implements RoundEnvironment
+    {
+        @Override
+        public Set<? extends Element> getRootElements()
+        {
+            return rootElements;
+        }
+
+        @Override
+        public boolean processingOver()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean errorRaised()
+        {
+            return false;
+        }
+
+        @Override
+        public Set<? extends Element> getElementsAnnotatedWith(TypeElement annotation)
+        {
+            return Set.of();
+        }
+
+        @Override
+        public Set<? extends Element> getElementsAnnotatedWith(Class<? extends Annotation> annotation)
+        {
+            return Set.of();
+        }
+    }
+
+    @Test
+    void disabledForFixedRelease()
+    {
+        var feature = Runtime.version().feature();
+        when(env.getOptions()).thenReturn(Map.of());
+        assertThat(LastRoundInterceptor.isBugPresent(env)).isTrue();
+        when(env.getOptions()).thenReturn(Map.of("proto.javac.bug.fixed.release", String.valueOf(feature + 1)));
+        assertThat(LastRoundInterceptor.isBugPresent(env)).isTrue();
+        when(env.getOptions()).thenReturn(Map.of("proto.javac.bug.fixed.release", String.valueOf(feature)));
+        assertThat(LastRoundInterceptor.isBugPresent(env)).isFalse();
+    }
+
     private TypeElement mockRealElement()
     {
-        return mockTypeElement("FooService");
+        return mockTypeElement("com.example.FooService");
     }
 
     @NotNull
-    private TypeElement mockTypeElement(String FooService)
+    private TypeElement mockTypeElement(String qualifiedName)
     {
-        var fakeName = mock(Name.class);
-        when(fakeName.toString()).thenReturn(FooService);
-
         var fakeElement = mock(TypeElement.class);
-        when(fakeElement.getSimpleName()).thenReturn(fakeName);
+        var simpleName = mockName(qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1));
+        lenient().when(fakeElement.getSimpleName()).thenReturn(simpleName);
+        var name = mockName(qualifiedName);
+        lenient().when(fakeElement.getQualifiedName()).thenReturn(name);
 
         return fakeElement;
     }
 
+    @NotNull
+    private Name mockName(String value)
+    {
+        var name = mock(Name.class);
+        lenient().when(name.toString()).thenReturn(value);
+        lenient().when(name.contentEquals(any())).thenAnswer(i -> value.contentEquals(i.<CharSequence>getArgument(0)));
+        return name;
+    }
+
     @NotNull
     private TypeElement mockFakeElement()
     {
-        return mockTypeElement("LastRoundInterceptorTest$jdk_8256826_bug$round4");
+        return mockTypeElement("com.niton.compile.processor.Proto$jdk_8256826_bug$round0");
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+package com.niton.compile.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ProcessingExecutorTest
+{
+    private final ProcessingLogger logger = mock(ProcessingLogger.class);
+    private final ProcessingExecutor executor = ProcessingExecutor.create(logger);
+
+    @AfterEach
+    void tearDown()
+    {
+        executor.close();
+    }
+
+    @Test
+    void virtualThreadsFromJava21()
+    {
+        assertThat(executor.isVirtual()).isEqualTo(Runtime.version().feature() >= 21);
+    }
+
+    @Test
+    void forkedWorkRunsOffTheProcessorThread() throws ExecutionException, InterruptedException
+    {
+        var caller = Thread.currentThread();
+        var worker = executor.fork(Thread::currentThread);
+
+        assertThat(worker.get()).isNotSameAs(caller);
+        executor.join();
+        verify(logger, never()).fail(any(Exception.class), anyBoolean());
+    }
+
+    @Test
+    void failuresAreReportedOnJoin()
+    {
+        var failure = new IOException("schema not found");
+        executor.fork(() -> {
+            throw failure;
+        });
+
+        executor.join();
+        verify(logger).fail(eq(failure), eq(true));
+    }
+
+    @Test
+    void closeStopsTheExecutor()
+    {
+        executor.close();
+        assertThat(executor.getExecutorService().isShutdown()).isTrue();
+    }
+}
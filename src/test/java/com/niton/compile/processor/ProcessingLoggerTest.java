@@ -4,20 +4,32 @@ import static javax.tools.Diagnostic.Kind.ERROR;
 import static javax.tools.Diagnostic.Kind.MANDATORY_WARNING;
 import static javax.tools.Diagnostic.Kind.NOTE;
 import static javax.tools.Diagnostic.Kind.WARNING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 class ProcessingLoggerTest
 {
@@ -48,6 +60,17 @@ class ProcessingLoggerTest
         verify(plog,times(1)).printMessage(eq(ERROR), contains("Some error"));
     }
 
+    @Test
+    void failExceptionMessageIsNotFormatted()
+    {
+        var plog = mock(Messager.class);
+        var logger = new ProcessingLogger(plog);
+        logger.fail(new IllegalArgumentException("Option proto.diagnostics.max.repeats has to be a number but was '5%'"));
+        logger.fail(new NullPointerException(), true);
+        verify(plog).printMessage(ERROR, "Option proto.diagnostics.max.repeats has to be a number but was '5%'");
+        verify(plog).printMessage(ERROR, "null");
+    }
+
     @Test
     void warn() {
         var plog = mock(Messager.class);
@@ -82,4 +105,106 @@ class ProcessingLoggerTest
         logger.logRoundInfo(Set.of(),mock(RoundEnvironment.class));
         verify(plog).printMessage(eq(NOTE), contains("false"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void messagesBelowTheLevelAreNotFormatted()
+    {
+        var plog = mock(Messager.class);
+        var logger = new ProcessingLogger(plog, LogLevel.WARN);
+        var unprintable = new Object()
+        {
+            @Override
+            public String toString()
+            {
+                throw new AssertionError("disabled messages should not be formatted");
+            }
+        };
+        logger.info("some %s", unprintable);
+        logger.info(mock(Element.class), "some %s", unprintable);
+        logger.info(() -> { throw new AssertionError("disabled messages should not be created"); });
+        logger.logRoundInfo(Set.of(), mock(RoundEnvironment.class));
+        verifyNoInteractions(plog);
+
+        logger.warn(mock(Element.class), () -> "a warning");
+        verify(plog).printMessage(eq(MANDATORY_WARNING), eq("a warning"), any(Element.class));
+    }
+
+    @Test
+    void errorsAreAlwaysReported()
+    {
+        var plog = mock(Messager.class);
+        var logger = new ProcessingLogger(plog, LogLevel.ERROR);
+        logger.log(LogLevel.WARN, "warning");
+        logger.fail("some %s", "error");
+        verify(plog).printMessage(ERROR, "some error");
+        verify(plog, times(1)).printMessage(any(), any());
+    }
+
+    @Test
+    void parseLevel()
+    {
+        assertThat(LogLevel.parse(null, LogLevel.INFO)).isEqualTo(LogLevel.INFO);
+        assertThat(LogLevel.parse(" Warning ", LogLevel.INFO)).isEqualTo(LogLevel.WARN);
+        assertThat(LogLevel.parse("error", LogLevel.INFO)).isEqualTo(LogLevel.ERROR);
+        assertThatThrownBy(() -> LogLevel.parse("verbose", LogLevel.INFO))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("verbose");
+    }
+
+    @Test
+    void otherThreadsAreReportedOnDrain() throws InterruptedException
+    {
+        var plog = mock(Messager.class);
+        var logger = new ProcessingLogger(plog);
+        var element = mock(Element.class);
+        var processorThread = Thread.currentThread();
+        var formattedOn = new Object()
+        {
+            @Override
+            public String toString()
+            {
+                return Thread.currentThread() == processorThread ? "processor" : "worker";
+            }
+        };
+
+        var worker = new Thread(() -> {
+            logger.warn(element, "formatted on %s", formattedOn);
+            logger.fail("failed");
+        });
+        worker.start();
+        worker.join();
+        verifyNoInteractions(plog);
+
+        logger.drain();
+        var order = inOrder(plog);
+        order.verify(plog).printMessage(MANDATORY_WARNING, "formatted on processor", element);
+        order.verify(plog).printMessage(ERROR, "failed");
+    }
+
+    @Test
+    void logRoundInfoIsBounded()
+    {
+        var plog = mock(Messager.class);
+        var logger = new ProcessingLogger(plog);
+        var round = mock(RoundEnvironment.class);
+        var rootElements = new LinkedHashSet<Element>();
+        for (int i = 0; i < 25; i++)
+        {
+            var element = mock(TypeElement.class);
+            var name = mock(Name.class);
+            when(name.toString()).thenReturn("com.test.Class" + i);
+            when(element.getQualifiedName()).thenReturn(name);
+            when(element.getKind()).thenReturn(ElementKind.CLASS);
+            rootElements.add(element);
+        }
+        doReturn(rootElements).when(round).getRootElements();
+
+        logger.logRoundInfo(Set.of(), round, 3);
+
+        var message = ArgumentCaptor.forClass(String.class);
+        verify(plog).printMessage(eq(NOTE), message.capture());
+        assertThat(message.getValue())
+            .contains("Inputs : 25 {CLASS=25} com.test.Class0, com.test.Class1, com.test.Class2, ... (22 more)")
+            .doesNotContain("com.test.Class3");
+    }
+}
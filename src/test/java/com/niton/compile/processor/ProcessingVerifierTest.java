@@ -4,6 +4,7 @@ import static java.lang.String.format;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.InstanceOfAssertFactories.type;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
@@ -14,10 +15,13 @@ import static org.mockito.Mockito.when;
 
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -209,6 +213,59 @@ class ProcessingVerifierTest
             "should implement interface java.io.Serializable");
     }
 
+    @Test
+    void passingChecksDoNotBuildMessages()
+    {
+        var verifier = new ProcessingVerifier(env, logger);
+        var elem = elementWithoutToString(ElementKind.CLASS);
+
+        assertThat(verifier.isClass(elem).because("it is %s", "required").failOnViolation()).isTrue();
+        assertThat(verifier.isInterface(elem).not().warnOnViolation()).isTrue();
+        assertThat(verifier.isAnnotatedWith(elem, Override.class).not().infoOnViolation()).isTrue();
+    }
+
+    @Test
+    void passingChecksOnlyAllocateTheVerification()
+    {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        var verifier = new ProcessingVerifier(env, logger);
+        var elem = elementWithoutToString(ElementKind.CLASS);
+        var checks = 20_000;
+        for (int i = 0; i < checks; i++)
+            verifier.isClass(elem).failOnViolation();
+
+        var thread = Thread.currentThread().getId();
+        var before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < checks; i++)
+            verifier.isClass(elem).failOnViolation();
+        var allocatedPerCheck = (threads.getThreadAllocatedBytes(thread) - before) / checks;
+
+        //the verification and the array of its message arguments (the predicate does not capture anything and the
+        //template is parsed once), formatting a message costs several hundred bytes
+        assertThat(allocatedPerCheck).isLessThan(128);
+    }
+
+    /**
+     * @return an element of the given kind that fails the test if it is converted to a string (as in message building)
+     */
+    private static Element elementWithoutToString(ElementKind kind)
+    {
+        return (Element) Proxy.newProxyInstance(
+            Element.class.getClassLoader(),
+            new Class<?>[]{Element.class},
+            (proxy, method, args) -> switch (method.getName())
+            {
+                case "getKind" -> kind;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> throw new AssertionError("message was built for a passing check");
+                default -> null;
+            }
+        );
+    }
+
     private void isValidOfType(ElementKind kind, String name,
         BiFunction<ProcessingVerifier, Element, ProcessingVerification> function)
     {
@@ -241,8 +298,12 @@ class ProcessingVerifierTest
     private void expectLog(Verifiable verify, Element clazz, String expectedLogMessage)
     {
         assertThat(verify.infoOnViolation()).isFalse();
-        var logCaptor = ArgumentCaptor.forClass(String.class);
-        verify(logger).info(eq(clazz), logCaptor.capture(), any());
-        assertThat(logCaptor.getValue()).endsWith(expectedLogMessage);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Supplier<String>> messageCaptor = ArgumentCaptor.forClass(Supplier.class);
+        var ruleCaptor = ArgumentCaptor.forClass(String.class);
+        verify(logger).log(eq(LogLevel.INFO), eq(clazz), ruleCaptor.capture(), messageCaptor.capture());
+        //the rule is the unformatted message so the diagnostics of a rule can be grouped
+        assertThat(ruleCaptor.getValue()).doesNotContain(clazz.toString());
+        assertThat(messageCaptor.getValue().get()).endsWith(expectedLogMessage);
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.niton.compile.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+
+class ProcessorEventsTest
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordingStateIsTracked()
+    {
+        assertThat(ProcessorEvents.isRecording()).isFalse();
+        try (var recording = new Recording())
+        {
+            recording.start();
+            assertThat(ProcessorEvents.isRecording()).isTrue();
+        }
+        assertThat(ProcessorEvents.isRecording()).isFalse();
+    }
+
+    @Test
+    void verificationsAreRecorded() throws IOException
+    {
+        var verifier = new ProcessingVerifier(mock(ProcessingEnvironment.class), mock(ProcessingLogger.class));
+        var file = directory.resolve("verification.jfr");
+        try (var recording = new Recording())
+        {
+            recording.enable("niton.proto.Verification").withThreshold(Duration.ZERO);
+            recording.start();
+            verifier.isA(mock(Element.class), ElementKind.CLASS).isValid();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        var events = RecordingFile.readAllEvents(file);
+        assertThat(events).singleElement().satisfies(event -> {
+            assertThat(event.getString("rule")).isEqualTo("%s should [not ]be a %s");
+            assertThat(event.getBoolean("valid")).isFalse();
+        });
+    }
+}
@@ -0,0 +1,189 @@
+package com.niton.compile.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProcessorHostTest
+{
+    private final List<String> calls = new ArrayList<>();
+    private ProcessingEnvironment env;
+
+    @BeforeEach
+    void setUp()
+    {
+        env = mock(ProcessingEnvironment.class);
+        when(env.getMessager()).thenReturn(mock(Messager.class));
+    }
+
+    @Test
+    void modulesRunInDependencyOrder()
+    {
+        var host = new ProcessorHost(List.of(new Mapper(calls), new Validator(calls)));
+        host.init(env);
+
+        assertThat(host.getModules()).extracting(Object::getClass).containsExactly(Validator.class, Mapper.class);
+        assertThat(host.getSupportedAnnotationTypes()).containsExactlyInAnyOrder("com.test.Mapped", "com.test.*");
+        assertThat(host.getModules()).allSatisfy(module -> assertThat(module.getSymbols()).isSameAs(host.getSymbols()));
+    }
+
+    @Test
+    void modulesOnlyGetTheirAnnotations()
+    {
+        var host = new ProcessorHost(List.of(new Mapper(calls), new Validator(calls)));
+        host.init(env);
+        var round = mock(RoundEnvironment.class);
+
+        host.process(Set.of(mockAnnotation("com.test.Valid")), round);
+        host.process(Set.of(mockAnnotation("com.test.Mapped")), round);
+        host.process(Set.of(), round);
+
+        assertThat(calls).containsExactly(
+            "Validator [com.test.Valid]",
+            "Validator [com.test.Mapped]", "Mapper [com.test.Mapped]",
+            "Validator []", "Mapper []"
+        );
+    }
+
+    @Test
+    void everyModuleRunsTheLastRound()
+    {
+        var host = new ProcessorHost(List.of(new Mapper(calls), new Validator(calls)));
+        host.init(env);
+        var round = mock(RoundEnvironment.class);
+        var lastRound = mock(RoundEnvironment.class);
+        when(lastRound.processingOver()).thenReturn(true);
+
+        host.process(Set.of(mockAnnotation("com.test.Valid")), round);
+        host.process(Set.of(), lastRound);
+
+        assertThat(calls).containsExactly("Validator [com.test.Valid]", "Validator []", "Mapper []");
+    }
+
+    @Test
+    void hostLoggerReadsTheLogLevel()
+    {
+        when(env.getOptions()).thenReturn(Map.of("proto.log.level", "warn"));
+        var host = new ProcessorHost(List.of(new Validator(calls)));
+        host.init(env);
+
+        verify(env.getMessager(), never()).printMessage(eq(Diagnostic.Kind.NOTE), any());
+    }
+
+    @Test
+    void incrementalModeIsTheWeakestOfAllModules()
+    {
+        assertThat(gradleOptions(IncrementalMode.ISOLATING, IncrementalMode.ISOLATING))
+            .containsExactly("org.gradle.annotation.processing.isolating");
+        assertThat(gradleOptions(IncrementalMode.ISOLATING, IncrementalMode.AGGREGATING))
+            .containsExactly("org.gradle.annotation.processing.aggregating");
+        assertThat(gradleOptions(IncrementalMode.AGGREGATING, IncrementalMode.NONE)).isEmpty();
+        assertThat(gradleOptions(IncrementalMode.NONE, IncrementalMode.ISOLATING)).isEmpty();
+    }
+
+    private Set<String> gradleOptions(IncrementalMode... modes)
+    {
+        var modules = Arrays.stream(modes).map(mode -> new Incremental(calls, mode)).toList();
+        return new ProcessorHost(modules).getSupportedOptions().stream()
+            .filter(option -> option.startsWith("org.gradle."))
+            .collect(Collectors.toSet());
+    }
+
+    private TypeElement mockAnnotation(String qualifiedName)
+    {
+        var name = mock(Name.class);
+        when(name.toString()).thenReturn(qualifiedName);
+        var annotation = mock(TypeElement.class);
+        when(annotation.getQualifiedName()).thenReturn(name);
+        when(annotation.toString()).thenReturn(qualifiedName);
+        return annotation;
+    }
+
+    private abstract static class RecordingProcessor extends BaseProcessor
+    {
+        private final List<String> calls;
+
+        RecordingProcessor(List<String> calls)
+        {
+            this.calls = calls;
+        }
+
+        @Override
+        public boolean performProcessing(@NotNull Set<? extends TypeElement> annotations,
+            @NotNull RoundEnvironment roundEnvironment)
+        {
+            calls.add(getClass().getSimpleName() + " " + annotations);
+            return false;
+        }
+
+        @Override
+        public boolean applyJavacBugWorkaround()
+        {
+            return false;
+        }
+    }
+
+    @SupportedAnnotationTypes("com.test.Mapped")
+    private static class Mapper extends RecordingProcessor
+    {
+        Mapper(List<String> calls)
+        {
+            super(calls);
+        }
+
+        @Override
+        public @NotNull Set<Class<? extends BaseProcessor>> getDependencies()
+        {
+            return Set.of(Validator.class);
+        }
+    }
+
+    @SupportedAnnotationTypes("com.test.*")
+    private static class Validator extends RecordingProcessor
+    {
+        Validator(List<String> calls)
+        {
+            super(calls);
+        }
+    }
+
+    private static class Incremental extends RecordingProcessor
+    {
+        private final IncrementalMode mode;
+
+        Incremental(List<String> calls, IncrementalMode mode)
+        {
+            super(calls);
+            this.mode = mode;
+        }
+
+        @Override
+        public @NotNull IncrementalMode getIncrementalMode()
+        {
+            return mode;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.niton.compile.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import javax.lang.model.element.Name;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SourceManifestTest
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    void newSourcesAreMisses()
+    {
+        var manifest = SourceManifest.inMemory();
+        assertThat(manifest.record("com.test.A", "class A {}")).isFalse();
+        assertThat(manifest.getHits()).isZero();
+        assertThat(manifest.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void unchangedSourcesAreHitsAfterReload() throws IOException
+    {
+        var file = directory.resolve("nested/Processor.sources");
+        var manifest = SourceManifest.load(file);
+        manifest.record("com.test.A", "class A {}");
+        manifest.record("com.test.B", "class B {}");
+        manifest.save();
+
+        var reloaded = SourceManifest.load(file);
+        assertThat(reloaded.record("com.test.A", "class A {}")).isTrue();
+        assertThat(reloaded.record("com.test.B", "class B { int changed; }")).isFalse();
+        assertThat(reloaded.getHits()).isEqualTo(1);
+        assertThat(reloaded.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void entriesNotGeneratedAgainAreKept() throws IOException
+    {
+        var file = directory.resolve("Processor.sources");
+        var manifest = SourceManifest.load(file);
+        manifest.record("com.test.A", "class A {}");
+        manifest.save();
+
+        var incremental = SourceManifest.load(file);
+        incremental.record("com.test.B", "class B {}");
+        incremental.save();
+
+        assertThat(SourceManifest.load(file).record("com.test.A", "class A {}")).isTrue();
+    }
+
+    @Test
+    void entriesOfCompiledSourcesAreDropped() throws IOException
+    {
+        var file = directory.resolve("Processor.sources");
+        var manifest = SourceManifest.load(file);
+        manifest.record("com.test.ModelMapper", SourceManifest.hash("class ModelMapper {}"), Set.of("com.test.Model"));
+        manifest.record("com.test.OtherMapper", SourceManifest.hash("class OtherMapper {}"), Set.of("com.test.Other"));
+        manifest.save();
+
+        var incremental = SourceManifest.load(file);
+        incremental.compiled(Set.of(mockType("com.test.Model")));
+        incremental.save();
+
+        var reloaded = SourceManifest.load(file);
+        assertThat(reloaded.record("com.test.ModelMapper", "class ModelMapper {}")).isFalse();
+        assertThat(reloaded.record("com.test.OtherMapper", "class OtherMapper {}")).isTrue();
+    }
+
+    @Test
+    void sourceOfMembersIsTheirTopLevelType()
+    {
+        var type = mockType("com.test.Model");
+        var field = mock(VariableElement.class);
+        when(field.getEnclosingElement()).thenReturn(type);
+
+        assertThat(SourceManifest.sourceOf(field)).isEqualTo("com.test.Model");
+    }
+
+    private TypeElement mockType(String qualifiedName)
+    {
+        var pack = mock(PackageElement.class);
+        var type = mock(TypeElement.class);
+        var name = mock(Name.class);
+        when(name.toString()).thenReturn(qualifiedName);
+        when(type.getQualifiedName()).thenReturn(name);
+        when(type.getEnclosingElement()).thenReturn(pack);
+        return type;
+    }
+
+    @Test
+    void brokenLinesAreIgnored() throws IOException
+    {
+        var file = directory.resolve("Processor.sources");
+        Files.writeString(file, "garbage\ncom.test.A zz\n");
+        assertThat(SourceManifest.load(file).record("com.test.A", "class A {}")).isFalse();
+    }
+
+    @Test
+    void hashDependsOnContent()
+    {
+        assertThat(SourceManifest.hash("class A {}")).isEqualTo(SourceManifest.hash("class A {}"));
+        assertThat(SourceManifest.hash("class A {}")).isNotEqualTo(SourceManifest.hash("class B {}"));
+    }
+}
@@ -0,0 +1,147 @@
+package com.niton.compile.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.util.Elements;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StepDispatcherTest
+{
+    private Elements elements;
+    private ProcessingLogger logger;
+    private ProcessingStep step;
+    private StepDispatcher dispatcher;
+    private TypeElement mapped;
+
+    @BeforeEach
+    void setUp()
+    {
+        elements = mock(Elements.class);
+        logger = mock(ProcessingLogger.class);
+        step = mock(ProcessingStep.class);
+        when(step.getAnnotations()).thenReturn(Set.of("com.test.Mapped"));
+        dispatcher = new StepDispatcher(List.of(step), elements, logger);
+        mapped = mockType("com.test.Mapped");
+    }
+
+    @Test
+    void roundsWithoutAnnotationsAreSkipped()
+    {
+        var round = mock(RoundEnvironment.class);
+        dispatcher.process(Set.of(), round);
+        dispatcher.process(Set.of(mockType("com.test.Other")), round);
+
+        verify(step, never()).process(any(), any());
+    }
+
+    @Test
+    void deferredElementsArePassedAgainInTheNextRound()
+    {
+        var type = mockType("com.test.Foo");
+        var field = mock(VariableElement.class);
+        when(field.getEnclosingElement()).thenReturn(type);
+        var round = mock(RoundEnvironment.class);
+        doReturn(Set.of(field)).when(round).getElementsAnnotatedWith(mapped);
+        doReturn(Set.of(field)).doReturn(Set.of()).when(step).process(any(), any());
+
+        dispatcher.process(Set.of(mapped), round);
+        assertThat(dispatcher.getDeferred()).containsExactly(new ElementHandle(ElementKind.CLASS, "com.test.Foo"));
+
+        var resolved = mockType("com.test.Foo");
+        when(elements.getTypeElement("com.test.Foo")).thenReturn(resolved);
+        annotate(resolved, mapped);
+        dispatcher.process(Set.of(), mock(RoundEnvironment.class));
+
+        verify(step).process(eq(Map.of("com.test.Mapped", Set.<Element>of(resolved))), any());
+        assertThat(dispatcher.getDeferred()).isEmpty();
+    }
+
+    @Test
+    void processedElementsAreNotPassedAgain()
+    {
+        var type = mockType("com.test.Foo");
+        var round = mock(RoundEnvironment.class);
+        doReturn(Set.of(type)).when(round).getElementsAnnotatedWith(mapped);
+
+        dispatcher.process(Set.of(mapped), round);
+        dispatcher.process(Set.of(mapped), round);
+
+        verify(step, times(1)).process(any(), any());
+    }
+
+    @Test
+    void elementsDeferredUntilTheEndAreReported()
+    {
+        var type = mockType("com.test.Foo");
+        var round = mock(RoundEnvironment.class);
+        doReturn(Set.of(type)).when(round).getElementsAnnotatedWith(mapped);
+        doReturn(Set.of(type)).when(step).process(any(), any());
+        when(elements.getTypeElement("com.test.Foo")).thenReturn(type);
+        annotate(type, mapped);
+
+        dispatcher.process(Set.of(mapped), round);
+        var lastRound = mock(RoundEnvironment.class);
+        when(lastRound.processingOver()).thenReturn(true);
+        dispatcher.process(Set.of(), lastRound);
+
+        verify(logger).fail(same(type), anyString(), any(), any());
+        assertThat(dispatcher.getDeferred()).isEmpty();
+    }
+
+    @Test
+    void elementsOfLocalClassesCanNotBeDeferred()
+    {
+        var local = mockType("");
+        var round = mock(RoundEnvironment.class);
+        doReturn(Set.of(local)).when(round).getElementsAnnotatedWith(mapped);
+        doReturn(Set.of(local)).when(step).process(any(), any());
+
+        dispatcher.process(Set.of(mapped), round);
+
+        verify(logger).fail(same(local), anyString(), any(), any(), any());
+        assertThat(dispatcher.getDeferred()).isEmpty();
+    }
+
+        private void annotate(TypeElement type, TypeElement annotation)
+    {
+        var mirror = mock(AnnotationMirror.class);
+        var mirrorType = mock(DeclaredType.class);
+        when(mirror.getAnnotationType()).thenReturn(mirrorType);
+        when(mirrorType.asElement()).thenReturn(annotation);
+        doReturn(List.of(mirror)).when(elements).getAllAnnotationMirrors(type);
+    }
+
+    private TypeElement mockType(String qualifiedName)
+    {
+        var name = mock(Name.class);
+        when(name.toString()).thenReturn(qualifiedName);
+        var type = mock(TypeElement.class);
+        when(type.getQualifiedName()).thenReturn(name);
+        when(type.getKind()).thenReturn(ElementKind.CLASS);
+        return type;
+    }
+}
@@ -0,0 +1,100 @@
+package com.niton.compile.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SymbolCacheTest
+{
+    private Elements elements;
+    private SymbolCache cache;
+
+    @BeforeEach
+    void setUp()
+    {
+        elements = mock(Elements.class);
+        var env = mock(ProcessingEnvironment.class);
+        when(env.getElementUtils()).thenReturn(elements);
+        cache = new SymbolCache(env);
+    }
+
+    @Test
+    void lookupsAreCachedUntilInvalidated()
+    {
+        var string = mock(TypeElement.class);
+        when(elements.getTypeElement("java.lang.String")).thenReturn(string);
+
+        assertThat(cache.getTypeElement(String.class)).isSameAs(string);
+        assertThat(cache.getTypeElement("java.lang.String")).isSameAs(string);
+        verify(elements, times(1)).getTypeElement("java.lang.String");
+
+        cache.invalidate();
+        assertThat(cache.getTypeElement(String.class)).isSameAs(string);
+        verify(elements, times(2)).getTypeElement("java.lang.String");
+        assertThat(cache.getInvalidations()).isEqualTo(1);
+    }
+
+    @Test
+    void nestedClassesUseTheCanonicalName()
+    {
+        var entry = mock(TypeElement.class);
+        var entryType = mock(TypeMirror.class);
+        when(entry.asType()).thenReturn(entryType);
+        when(elements.getTypeElement("java.util.Map.Entry")).thenReturn(entry);
+
+        assertThat(cache.getType(Map.Entry.class)).isSameAs(entryType);
+    }
+
+    @Test
+    void unknownTypes()
+    {
+        assertThat(cache.getTypeElement("does.not.Exist")).isNull();
+        assertThat(cache.getTypeElement("does.not.Exist")).isNull();
+        verify(elements, times(1)).getTypeElement("does.not.Exist");
+        assertThatThrownBy(() -> cache.getType("does.not.Exist"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("does.not.Exist");
+    }
+
+    @Test
+    void uncachedLookupsAreDelegated()
+    {
+        var env = mock(ProcessingEnvironment.class);
+        when(env.getElementUtils()).thenReturn(elements);
+        var uncached = SymbolCache.uncached(env);
+
+        assertThat(uncached.getTypeElement("com.test.Generated")).isNull();
+        var generated = mock(TypeElement.class);
+        when(elements.getTypeElement("com.test.Generated")).thenReturn(generated);
+        assertThat(uncached.getTypeElement("com.test.Generated")).isSameAs(generated);
+        verify(elements, times(2)).getTypeElement("com.test.Generated");
+    }
+
+    @Test
+    void statistics()
+    {
+        assertThat(cache.getHitRate()).isZero();
+        cache.getTypeElement("a.A");
+        cache.getTypeElement("a.A");
+        cache.getTypeElement("a.A");
+        cache.getTypeElement("b.B");
+
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(2);
+        assertThat(cache.getHitRate()).isEqualTo(0.5);
+        assertThat(cache).hasToString("SymbolCache{hits=2, misses=2, hitRate=50.0%, invalidations=0}");
+    }
+}
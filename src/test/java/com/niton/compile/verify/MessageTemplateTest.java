@@ -0,0 +1,46 @@
+package com.niton.compile.verify;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class MessageTemplateTest
+{
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+        "This should [not ]be true|This should be true|This should not be true",
+        "This should be \\[very\\] true|This should be [very] true|This should be [very] true",
+        "This should [not\\]\\]\\[] be \\[very\\] true|This should  be [very] true|This should not]][ be [very] true",
+        "[Never ]do [not ]this|do this|Never do not this",
+        "unbalanced ] and [ brackets|unbalanced ] and [ brackets|unbalanced  and  brackets",
+    })
+    void render(String pattern, String positive, String negated)
+    {
+        var template = MessageTemplate.of(pattern);
+        assertThat(template.render(false)).isEqualTo(positive);
+        assertThat(template.render(true)).isEqualTo(negated);
+    }
+
+    @Test
+    void argumentsAreNotParsed()
+    {
+        var template = MessageTemplate.of("%s should [not ]be a %s");
+        assertThat(template.render(false, "List[]", "[class]")).isEqualTo("List[] should be a [class]");
+        assertThat(template.render(true, "List[]", "[class]")).isEqualTo("List[] should not be a [class]");
+    }
+
+    @Test
+    void withoutArgumentsNothingIsFormatted()
+    {
+        assertThat(MessageTemplate.of("100% [not ]sure").render(true)).isEqualTo("100% not sure");
+    }
+
+    @Test
+    void templatesAreCached()
+    {
+        assertThat(MessageTemplate.of("%s should [not ]be cached"))
+            .isSameAs(MessageTemplate.of("%s should [not ]be cached"));
+    }
+}
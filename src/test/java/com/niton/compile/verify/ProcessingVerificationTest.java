@@ -1,18 +1,29 @@
 package com.niton.compile.verify;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
 
 import com.niton.compile.processor.ProcessingVerifier;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.ArgumentCaptor;
 
+import com.niton.compile.processor.DiagnosticBuffer;
+import com.niton.compile.processor.LogLevel;
 import com.niton.compile.processor.ProcessingLogger;
 
 class ProcessingVerificationTest
@@ -54,8 +65,43 @@ class ProcessingVerificationTest
             elem
         );
         pv.because("it is %s", "impossible").infoOnViolation();
-        verify(logger).info(elem, "This should be false, because it is impossible");
+        expectReported(logger, LogLevel.INFO, elem, "This should be false, because it is impossible");
     }
+    @Test
+    void becauseWithoutArgumentsIsFormatted()
+    {
+        var elem = mock(TypeElement.class);
+        var messager = mock(Messager.class);
+        ProcessingVerification pv = new ProcessingVerification(
+            new ProcessingLogger(messager),
+            e -> false,
+            "This should be false",
+            elem
+        );
+        pv.because("it is 100%% sure").infoOnViolation();
+        verify(messager).printMessage(Diagnostic.Kind.NOTE, "This should be false, because it is 100% sure", elem);
+    }
+
+    @Test
+    void reasonsDoNotSplitTheRule()
+    {
+        var messager = mock(Messager.class);
+        var logger = new ProcessingLogger(messager, LogLevel.INFO, new DiagnosticBuffer(messager, 1));
+        for (var name : List.of("Foo", "Bar", "Baz"))
+        {
+            var elem = mock(TypeElement.class);
+            new ProcessingVerification(logger, e -> false, "This should be false", elem)
+                .because("%s is not allowed", name)
+                .infoOnViolation();
+            new ProcessingVerification(logger, e -> false, () -> "Supplied for " + name, elem)
+                .infoOnViolation();
+        }
+        logger.flush();
+
+        verify(messager).printMessage(Diagnostic.Kind.NOTE, "This should be false, because Foo is not allowed (and 2 more)");
+        verify(messager).printMessage(Diagnostic.Kind.NOTE, "Supplied for Foo (and 2 more)");
+    }
+
     @Test
     void becauseAnnotation()
     {
@@ -68,7 +114,7 @@ class ProcessingVerificationTest
             elem
         );
         pv.because(Override.class).infoOnViolation();
-        verify(logger).info(elem, "This should be false, because it is annotated with @Override");
+        expectReported(logger, LogLevel.INFO, elem, "This should be false, because it is annotated with @Override");
     }
 
     @ParameterizedTest
@@ -92,7 +138,7 @@ class ProcessingVerificationTest
             pv = pv.not();
         pv.failOnViolation();
         if (shouldWarn)
-            verify(logger).fail(elem, "This should be true");
+            expectReported(logger, LogLevel.ERROR, elem, "This should be true");
         else
             verifyNoInteractions(logger);
     }
@@ -118,7 +164,7 @@ class ProcessingVerificationTest
             pv = pv.not();
         pv.infoOnViolation();
         if (shouldWarn)
-            verify(logger).info(elem, "This should be true");
+            expectReported(logger, LogLevel.INFO, elem, "This should be true");
         else
             verifyNoInteractions(logger);
     }
@@ -144,7 +190,7 @@ class ProcessingVerificationTest
             pv = pv.not();
         pv.warnOnViolation();
         if (shouldWarn)
-            verify(logger).warn(elem, "This should be true");
+            expectReported(logger, LogLevel.WARN, elem, "This should be true");
         else
             verifyNoInteractions(logger);
     }
@@ -161,7 +207,7 @@ class ProcessingVerificationTest
             elem
         ).not();
         pv.infoOnViolation();
-        verify(logger).info(elem, "This should not be true");
+        expectReported(logger, LogLevel.INFO, elem, "This should not be true");
     }
     @Test
     void multipleNotMessageReplacementApplied()
@@ -175,7 +221,7 @@ class ProcessingVerificationTest
             elem
         ).not();
         pv.infoOnViolation();
-        verify(logger).info(elem, "This should not be so very true");
+        expectReported(logger, LogLevel.INFO, elem, "This should not be so very true");
     }
 
     @Test
@@ -190,7 +236,7 @@ class ProcessingVerificationTest
             elem
         ).not();
         pv.infoOnViolation();
-        verify(logger).info(elem, "This should not be [very] true");
+        expectReported(logger, LogLevel.INFO, elem, "This should not be [very] true");
     }
     @Test
     void multipleNotMessageReplacementEscapedWithoutViolation()
@@ -204,7 +250,7 @@ class ProcessingVerificationTest
             elem
         ).not();
         pv.infoOnViolation();
-        verify(logger).info(elem, "This should not be [very] true");
+        expectReported(logger, LogLevel.INFO, elem, "This should not be [very] true");
     }
 
     @Test
@@ -219,7 +265,7 @@ class ProcessingVerificationTest
             elem
         ).not();
         pv.infoOnViolation();
-        verify(logger).info(elem, "This should not]][ be [very] true");
+        expectReported(logger, LogLevel.INFO, elem, "This should not]][ be [very] true");
     }
     @Test
     void notMessageReplacementNotApplied()
@@ -233,7 +279,7 @@ class ProcessingVerificationTest
             elem
         );
         pv.infoOnViolation();
-        verify(logger).info(elem, "This should be true");
+        expectReported(logger, LogLevel.INFO, elem, "This should be true");
     }
     @Test
     void isValid()
@@ -258,4 +304,12 @@ class ProcessingVerificationTest
         );
         assertThat(pv.isValid()).isFalse();
     }
-}
\ No newline at end of file
+
+    private static void expectReported(ProcessingLogger logger, LogLevel level, Element element, String message)
+    {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Supplier<String>> captor = ArgumentCaptor.forClass(Supplier.class);
+        verify(logger).log(eq(level), eq(element), anyString(), captor.capture());
+        assertThat(captor.getValue().get()).isEqualTo(message);
+    }
+}